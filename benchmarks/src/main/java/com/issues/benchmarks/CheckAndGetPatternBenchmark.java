@@ -0,0 +1,60 @@
+package com.issues.benchmarks;
+
+import com.issues.User;
+import com.issues.optional.CheckAndGetPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CheckAndGetPattern#isAdminOldStyle(User)} vs {@link CheckAndGetPattern#isAdminNewStyle(User)} vs
+ * {@link CheckAndGetPattern#isAdmin(User)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckAndGetPatternBenchmark {
+
+    @Param({"1", "3"})
+    private int permissionCount;
+
+    private final CheckAndGetPattern pattern = new CheckAndGetPattern();
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = User.newBuilder()
+                .withId(1)
+                .withPermissions(Users.permissionsEndingWithAdmin(permissionCount))
+                .build();
+    }
+
+    @Benchmark
+    public boolean isAdminOldStyle() {
+        return pattern.isAdminOldStyle(user);
+    }
+
+    @Benchmark
+    public boolean isAdminNewStyle() {
+        return pattern.isAdminNewStyle(user);
+    }
+
+    @Benchmark
+    public boolean isAdminPermissionSet() {
+        return pattern.isAdmin(user);
+    }
+}
@@ -0,0 +1,71 @@
+package com.issues.benchmarks;
+
+import com.issues.User;
+import com.issues.collections.UserPermissionIndex;
+import com.issues.lambda.DoubleLoopsToLambda;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All the {@code filterManagers*} variants of {@link DoubleLoopsToLambda}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterManagersBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private final DoubleLoopsToLambda filter = new DoubleLoopsToLambda();
+
+    private List<User> users;
+
+    private UserPermissionIndex index;
+
+    @Setup
+    public void setUp() {
+        users = Users.randomUsers(size);
+        index = UserPermissionIndex.of(users);
+    }
+
+    @Benchmark
+    public List<User> filterManagersBad() {
+        return filter.filterManagersBad(users);
+    }
+
+    @Benchmark
+    public List<User> filterManagersBetter() {
+        return filter.filterManagersBetter(users);
+    }
+
+    @Benchmark
+    public List<User> filterManagersBest() {
+        return filter.filterManagersBest(users);
+    }
+
+    @Benchmark
+    public List<User> filterManagersParallel() {
+        return filter.filterManagersParallel(users);
+    }
+
+    @Benchmark
+    public List<User> filterManagersIndexed() {
+        return filter.filterManagersIndexed(index);
+    }
+}
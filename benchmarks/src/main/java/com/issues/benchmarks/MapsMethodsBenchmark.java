@@ -0,0 +1,104 @@
+package com.issues.benchmarks;
+
+import com.issues.User;
+import com.issues.collections.AppendOnlyList;
+import com.issues.collections.ConcurrentMultimap;
+import com.issues.collections.MapsMethods;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Styles of appending users to a hot key, as in {@link MapsMethods#addUserToMap(Integer, List)}. Every invocation
+ * appends {@code appends} batches of {@code batchSize} users to the same key of an empty map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapsMethodsBenchmark {
+
+    private static final Integer KEY = 1;
+
+    @Param({"10", "100", "1000"})
+    private int appends;
+
+    @Param({"10"})
+    private int batchSize;
+
+    private List<User> batch;
+
+    @Setup
+    public void setUp() {
+        batch = Users.randomUsers(batchSize);
+    }
+
+    @Benchmark
+    public Map<Integer, List<User>> containsKey() {
+        Map<Integer, List<User>> map = new HashMap<>();
+        for (int i = 0; i < appends; i++) {
+            if (!map.containsKey(KEY)) {
+                map.put(KEY, new ArrayList<>());
+            }
+            map.get(KEY).addAll(batch);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<Integer, List<User>> computeIfAbsent() {
+        Map<Integer, List<User>> map = new HashMap<>();
+        for (int i = 0; i < appends; i++) {
+            map.computeIfAbsent(KEY, k -> new ArrayList<>()).addAll(batch);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<Integer, List<User>> mergeStreamConcat() {
+        Map<Integer, List<User>> map = new HashMap<>();
+        for (int i = 0; i < appends; i++) {
+            map.merge(KEY, batch, (list1, list2) -> Stream.of(list1, list2)
+                    .flatMap(Collection::stream)
+                    .collect(Collectors.toList()));
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<Integer, List<User>> mergeAppendOnlyList() {
+        Map<Integer, List<User>> map = new HashMap<>();
+        for (int i = 0; i < appends; i++) {
+            map.merge(KEY, batch, AppendOnlyList::concat);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public ConcurrentMultimap<Integer, User> concurrentMultimap() {
+        ConcurrentMultimap<Integer, User> map = new ConcurrentMultimap<>();
+        for (int i = 0; i < appends; i++) {
+            map.putAll(KEY, batch);
+        }
+        return map;
+    }
+}
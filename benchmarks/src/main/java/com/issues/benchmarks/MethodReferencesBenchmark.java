@@ -0,0 +1,74 @@
+package com.issues.benchmarks;
+
+import com.issues.lambda.MethodReferences;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MethodReferences#processStringNotRecommended(String)} vs {@link MethodReferences#processStringRecommended(String)}.
+ * {@link System#out} is replaced with a stream discarding everything, so console does not dominate results.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MethodReferencesBenchmark {
+
+    @Param({"16", "1024"})
+    private int length;
+
+    private final MethodReferences methodReferences = new MethodReferences();
+
+    private String value;
+
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'a');
+        value = new String(chars);
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void processStringNotRecommended() {
+        methodReferences.processStringNotRecommended(value);
+    }
+
+    @Benchmark
+    public void processStringRecommended() {
+        methodReferences.processStringRecommended(value);
+    }
+}
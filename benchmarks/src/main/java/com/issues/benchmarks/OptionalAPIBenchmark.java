@@ -0,0 +1,73 @@
+package com.issues.benchmarks;
+
+import com.issues.User;
+import com.issues.hierarchy.AncestorIndex;
+import com.issues.optional.OptionalAPI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link OptionalAPI#getGrandParentIdIncorrect(User)} vs {@link OptionalAPI#getGrandParentIdBad(User)} vs
+ * {@link OptionalAPI#getGrandParentId(User)}, plus ancestor at the top of hierarchy via {@link java.util.Optional} hops and via
+ * {@link AncestorIndex}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OptionalAPIBenchmark {
+
+    @Param({"2", "8", "32"})
+    private int depth;
+
+    private final OptionalAPI optionalAPI = new OptionalAPI();
+
+    private User user;
+
+    private AncestorIndex index;
+
+    @Setup
+    public void setUp() {
+        user = Users.chain(depth);
+        index = AncestorIndex.of(Collections.singletonList(user));
+    }
+
+    @Benchmark
+    public Integer getGrandParentIdIncorrect() {
+        return optionalAPI.getGrandParentIdIncorrect(user);
+    }
+
+    @Benchmark
+    public Integer getGrandParentIdBad() {
+        return optionalAPI.getGrandParentIdBad(user);
+    }
+
+    @Benchmark
+    public Integer getGrandParentId() {
+        return optionalAPI.getGrandParentId(user);
+    }
+
+    @Benchmark
+    public Integer getRootIdOptional() {
+        return optionalAPI.getAncestorId(user, depth);
+    }
+
+    @Benchmark
+    public Integer getRootIdIndexed() {
+        return optionalAPI.getAncestorId(index, user, depth);
+    }
+}
@@ -0,0 +1,88 @@
+package com.issues.benchmarks;
+
+import com.issues.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * commons-lang3 reflection builders (previous {@link User} implementation, see {@link LegacyUser}) vs
+ * {@link com.issues.ObjectMethods} based {@link User#equals(Object)}, {@link User#hashCode()} and
+ * {@link User#toString()}, plus cached hash of frozen user. Both hierarchies have the same shape and field values, so
+ * reflection variants pay the legacy cost on every level of the parent chain.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserObjectMethodsBenchmark {
+
+    @Param({"0", "4", "16"})
+    private int depth;
+
+    private User user;
+
+    private User equalUser;
+
+    private User frozenUser;
+
+    private LegacyUser legacyUser;
+
+    private LegacyUser equalLegacyUser;
+
+    @Setup
+    public void setUp() {
+        user = Users.chain(depth);
+        equalUser = Users.chain(depth);
+        frozenUser = Users.chain(depth).freeze();
+        legacyUser = Users.legacyChain(depth);
+        equalLegacyUser = Users.legacyChain(depth);
+    }
+
+    @Benchmark
+    public boolean equalsReflection() {
+        return legacyUser.equals(equalLegacyUser);
+    }
+
+    @Benchmark
+    public boolean equalsMethodHandles() {
+        return user.equals(equalUser);
+    }
+
+    @Benchmark
+    public int hashCodeReflection() {
+        return legacyUser.hashCode();
+    }
+
+    @Benchmark
+    public int hashCodeMethodHandles() {
+        return user.hashCode();
+    }
+
+    @Benchmark
+    public int hashCodeFrozen() {
+        return frozenUser.hashCode();
+    }
+
+    @Benchmark
+    public String toStringReflection() {
+        return legacyUser.toString();
+    }
+
+    @Benchmark
+    public String toStringMethodHandles() {
+        return user.toString();
+    }
+}
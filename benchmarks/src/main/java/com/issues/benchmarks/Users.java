@@ -0,0 +1,98 @@
+package com.issues.benchmarks;
+
+import com.issues.Permissions;
+import com.issues.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Test data for benchmarks.
+ */
+final class Users {
+
+    private Users() {
+    }
+
+    /**
+     * @param depth amount of parents above the returned user.
+     * @return
+     */
+    static User chain(int depth) {
+        User current = User.newBuilder()
+                .withId(0)
+                .withPermissions(Collections.singletonList(Permissions.USER))
+                .build();
+        for (int i = 1; i <= depth; i++) {
+            User child = User.newBuilder()
+                    .withId(i)
+                    .withPermissions(Collections.singletonList(Permissions.USER))
+                    .build();
+            child.setParent(Optional.of(current));
+            current = child;
+        }
+        return current;
+    }
+
+    /**
+     * The same hierarchy as {@link #chain(int)}, built of {@link LegacyUser}s.
+     * @param depth amount of parents above the returned user.
+     * @return
+     */
+    static LegacyUser legacyChain(int depth) {
+        LegacyUser current = legacyUser(0);
+        for (int i = 1; i <= depth; i++) {
+            LegacyUser child = legacyUser(i);
+            child.setParent(Optional.of(current));
+            current = child;
+        }
+        return current;
+    }
+
+    /**
+     * Every user gets a random subset of permissions, roughly half of users are managers.
+     * @param size
+     * @return
+     */
+    static List<User> randomUsers(int size) {
+        Random random = new Random(42);
+        Permissions[] values = Permissions.values();
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<Permissions> permissions = new ArrayList<>(values.length);
+            for (Permissions permission : values) {
+                if (random.nextBoolean()) {
+                    permissions.add(permission);
+                }
+            }
+            users.add(User.newBuilder().withId(i).withPermissions(permissions).build());
+        }
+        return users;
+    }
+
+    /**
+     * Legacy builder ignores {@code withId}, so id is set explicitly.
+     */
+    private static LegacyUser legacyUser(int id) {
+        LegacyUser user = LegacyUser.newBuilder()
+                .withPermissions(Collections.singletonList(Permissions.USER))
+                .build();
+        user.setId(id);
+        return user;
+    }
+
+    /**
+     * @param count
+     * @return {@code count} permissions with {@link Permissions#ADMIN} being the last one, so list scans are worst case.
+     */
+    static List<Permissions> permissionsEndingWithAdmin(int count) {
+        List<Permissions> all = new ArrayList<>(Arrays.asList(Permissions.values()));
+        all.remove(Permissions.ADMIN);
+        all.add(Permissions.ADMIN);
+        return new ArrayList<>(all.subList(all.size() - Math.min(count, all.size()), all.size()));
+    }
+}
@@ -0,0 +1,23 @@
+package com.issues.benchmarks.allocation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks allocation budget scenario, see {@link AllocationBudgetRunner}.
+ *
+ * Scenario method should be public, accept a single {@code int} (amount of invocations of the measured method, so the
+ * loop itself is JIT compiled together with the method) and return a value computed from all the invocations, so
+ * JIT could not eliminate them.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AllocationBudget {
+
+    /**
+     * Maximum average amount of bytes allocated per invocation after warm up.
+     */
+    double bytesPerInvocation() default 0;
+}
@@ -0,0 +1,119 @@
+package com.issues.benchmarks.allocation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that hot path methods do not allocate more than expected. Whether {@link java.util.Optional} chains allocate
+ * depends on JIT inlining and escape analysis, so it is easy to lose allocation free code during refactoring without
+ * noticing.
+ *
+ * Every {@link AllocationBudget} method of given classes is warmed up and then invoked several times, bytes allocated by
+ * current thread are measured via {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}. The best
+ * round is compared with the budget, so a single GC or deoptimization does not fail the check.
+ *
+ * Usage: {@code AllocationBudgetRunner <class name>...}. Fails with {@link AssertionError} listing all the exceeded
+ * budgets, which fails Maven build when executed by exec plugin.
+ */
+public class AllocationBudgetRunner {
+
+    private static final int WARMUP_ROUNDS = 20;
+
+    private static final int MEASUREMENT_ROUNDS = 5;
+
+    private static final int INVOCATIONS_PER_ROUND = 100_000;
+
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    public AllocationBudgetRunner() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            throw new UnsupportedOperationException("Thread allocation counters are not supported by this JVM.");
+        }
+        this.threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    public static void main(String[] args) throws Exception {
+        AllocationBudgetRunner runner = new AllocationBudgetRunner();
+        List<String> failures = new ArrayList<>();
+        for (String className : args) {
+            failures.addAll(runner.check(Class.forName(className)));
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Allocation budget exceeded:\n" + String.join("\n", failures));
+        }
+    }
+
+    /**
+     * @param scenarios
+     * @return descriptions of exceeded budgets.
+     * @throws ReflectiveOperationException
+     */
+    public List<String> check(Class<?> scenarios) throws ReflectiveOperationException {
+        Object instance = scenarios.getConstructor().newInstance();
+        List<String> failures = new ArrayList<>();
+        for (Method method : scenarios.getMethods()) {
+            AllocationBudget budget = method.getAnnotation(AllocationBudget.class);
+            if (budget == null) {
+                continue;
+            }
+            double bytes = measure(instance, method);
+            String result = String.format("%s.%s: %.2f bytes/invocation, budget %.2f",
+                    scenarios.getSimpleName(), method.getName(), bytes, budget.bytesPerInvocation());
+            System.out.println(result);
+            if (bytes > budget.bytesPerInvocation()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    private double measure(Object instance, Method method) throws ReflectiveOperationException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            invoke(instance, method);
+        }
+        //reflective call itself (boxing, varargs array) and the counter may allocate, subtract it
+        Method baseline = AllocationBudgetRunner.class.getMethod("baseline", int.class);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            invoke(null, baseline);
+        }
+        long overhead = bestRound(null, baseline);
+        long allocated = Math.max(0, bestRound(instance, method) - overhead);
+        return (double) allocated / INVOCATIONS_PER_ROUND;
+    }
+
+    private long bestRound(Object instance, Method method) throws ReflectiveOperationException {
+        long threadId = Thread.currentThread().getId();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASUREMENT_ROUNDS; i++) {
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            invoke(instance, method);
+            best = Math.min(best, threadMXBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return best;
+    }
+
+    /**
+     * Empty scenario, used to measure harness overhead.
+     * @param invocations
+     * @return
+     */
+    public static int baseline(int invocations) {
+        return invocations;
+    }
+
+    private static void invoke(Object instance, Method method) throws ReflectiveOperationException {
+        try {
+            method.invoke(instance, INVOCATIONS_PER_ROUND);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.issues.benchmarks.allocation;
+
+import com.issues.Permissions;
+import com.issues.User;
+import com.issues.optional.CheckAndGetPattern;
+import com.issues.optional.OptionalAPI;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Allocation budgets of hot path methods, checked by {@link AllocationBudgetRunner} during the build.
+ */
+public class HotPathAllocationBudgets {
+
+    private final CheckAndGetPattern checkAndGetPattern = new CheckAndGetPattern();
+
+    private final OptionalAPI optionalAPI = new OptionalAPI();
+
+    private final User[] users = new User[16];
+
+    public HotPathAllocationBudgets() {
+        for (int i = 0; i < users.length; i++) {
+            User grandParent = User.newBuilder().withId(i).build();
+            User parent = User.newBuilder().withId(100 + i).build();
+            parent.setParent(Optional.of(grandParent));
+            users[i] = User.newBuilder()
+                    .withId(1000 + i)
+                    .withPermissions(i % 2 == 0 ? Arrays.asList(Permissions.USER, Permissions.ADMIN)
+                            : Arrays.asList(Permissions.USER))
+                    .build();
+            users[i].setParent(Optional.of(parent));
+        }
+    }
+
+    @AllocationBudget
+    public int isAdminOldStyle(int invocations) {
+        int result = 0;
+        for (int i = 0; i < invocations; i++) {
+            result += checkAndGetPattern.isAdminOldStyle(users[i & 15]) ? 1 : 0;
+        }
+        return result;
+    }
+
+    @AllocationBudget
+    public int isAdminNewStyle(int invocations) {
+        int result = 0;
+        for (int i = 0; i < invocations; i++) {
+            result += checkAndGetPattern.isAdminNewStyle(users[i & 15]) ? 1 : 0;
+        }
+        return result;
+    }
+
+    @AllocationBudget
+    public int isAdmin(int invocations) {
+        int result = 0;
+        for (int i = 0; i < invocations; i++) {
+            result += checkAndGetPattern.isAdmin(users[i & 15]) ? 1 : 0;
+        }
+        return result;
+    }
+
+    /**
+     * Grandparent ids are below 128, so returned {@code Integer}s come from the cache.
+     */
+    @AllocationBudget
+    public int getGrandParentId(int invocations) {
+        int result = 0;
+        for (int i = 0; i < invocations; i++) {
+            result += optionalAPI.getGrandParentId(users[i & 15]);
+        }
+        return result;
+    }
+}
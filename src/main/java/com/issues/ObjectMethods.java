@@ -0,0 +1,131 @@
+package com.issues;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Non reflective replacement for {@code EqualsBuilder.reflectionEquals}, {@code HashCodeBuilder.reflectionHashCode}
+ * and {@code ToStringBuilder.reflectionToString}.
+ *
+ * Fields are discovered via reflection only once, in {@link #of(Class)}, and turned into {@link MethodHandle} getters.
+ * As a result, new fields are still picked up automatically, however, every call is just a couple of handle invocations
+ * instead of walking the class with {@link Field#get(Object)}. The same as commons-lang3, static and transient fields
+ * are skipped.
+ *
+ * Create one instance per class and keep it in a {@code static final} field.
+ * @param <T>
+ */
+public final class ObjectMethods<T> {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<T> type;
+
+    private final String[] names;
+
+    private final MethodHandle[] getters;
+
+    private ObjectMethods(Class<T> type, String[] names, MethodHandle[] getters) {
+        this.type = type;
+        this.names = names;
+        this.getters = getters;
+    }
+
+    public static <T> ObjectMethods<T> of(Class<T> type) {
+        List<String> names = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            //declaration order, subclass first, the same as commons-lang3 3.6 reflection builders walk the fields
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    getters.add(lookup.unreflectGetter(field).asType(GETTER_TYPE));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Unable to access field " + field, e);
+                }
+                names.add(field.getName());
+            }
+        }
+        return new ObjectMethods<>(type, names.toArray(new String[0]), getters.toArray(new MethodHandle[0]));
+    }
+
+    public boolean equals(T self, Object other) {
+        if (self == other) {
+            return true;
+        }
+        if (other == null || other.getClass() != self.getClass()) {
+            return false;
+        }
+        for (MethodHandle getter : getters) {
+            if (!Objects.deepEquals(get(getter, self), get(getter, other))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int hashCode(T self) {
+        int result = 17;
+        for (MethodHandle getter : getters) {
+            Object value = get(getter, self);
+            int hash;
+            if (value == null) {
+                hash = 0;
+            } else if (value.getClass().isArray()) {
+                hash = Arrays.deepHashCode(new Object[]{value});
+            } else {
+                hash = value.hashCode();
+            }
+            result = 37 * result + hash;
+        }
+        return result;
+    }
+
+    /**
+     * Output format is the same as {@code ToStringStyle.SHORT_PREFIX_STYLE}, e.g.
+     * {@code User[permissions=[ADMIN],parent=<null>,id=1]}.
+     * @param self
+     * @return
+     */
+    public String toString(T self) {
+        StringBuilder sb = new StringBuilder(type.getSimpleName()).append('[');
+        for (int i = 0; i < getters.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            Object value = get(getters[i], self);
+            sb.append(names[i]).append('=');
+            if (value == null) {
+                sb.append("<null>");
+            } else if (value.getClass().isArray()) {
+                String array = Arrays.deepToString(new Object[]{value});
+                sb.append(array, 1, array.length() - 1);
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private static Object get(MethodHandle getter, Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.issues;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Immutable set of {@link Permissions} packed into a single {@code long}, one bit per {@link Permissions#ordinal()}.
+ * All checks are constant time and allocation free, unlike {@link List#contains(Object)} which scans the list.
+ *
+ * {@link EnumSet} uses the same trick internally, however, it is mutable and every check goes through the
+ * {@link Collection} API.
+ */
+public final class PermissionSet {
+
+    public static final PermissionSet EMPTY = new PermissionSet(0L);
+
+    private final long mask;
+
+    private PermissionSet(long mask) {
+        this.mask = mask;
+    }
+
+    public static PermissionSet of(Permissions... permissions) {
+        long mask = 0L;
+        for (Permissions permission : permissions) {
+            mask |= bit(permission);
+        }
+        return fromMask(mask);
+    }
+
+    /**
+     * Null collection and null elements are ignored.
+     * @param permissions
+     * @return
+     */
+    public static PermissionSet of(Collection<Permissions> permissions) {
+        if (permissions == null) {
+            return EMPTY;
+        }
+        long mask = 0L;
+        for (Permissions permission : permissions) {
+            if (permission != null) {
+                mask |= bit(permission);
+            }
+        }
+        return fromMask(mask);
+    }
+
+    public static PermissionSet fromMask(long mask) {
+        return mask == 0L ? EMPTY : new PermissionSet(mask);
+    }
+
+    public static long bit(Permissions permission) {
+        return 1L << permission.ordinal();
+    }
+
+    public long mask() {
+        return mask;
+    }
+
+    public boolean has(Permissions permission) {
+        return (mask & bit(permission)) != 0L;
+    }
+
+    public boolean hasAll(PermissionSet other) {
+        return (mask & other.mask) == other.mask;
+    }
+
+    public boolean hasAny(PermissionSet other) {
+        return (mask & other.mask) != 0L;
+    }
+
+    public boolean isEmpty() {
+        return mask == 0L;
+    }
+
+    public PermissionSet with(Permissions permission) {
+        return fromMask(mask | bit(permission));
+    }
+
+    public PermissionSet without(Permissions permission) {
+        return fromMask(mask & ~bit(permission));
+    }
+
+    public EnumSet<Permissions> toEnumSet() {
+        EnumSet<Permissions> result = EnumSet.noneOf(Permissions.class);
+        for (Permissions permission : Permissions.values()) {
+            if (has(permission)) {
+                result.add(permission);
+            }
+        }
+        return result;
+    }
+
+    public List<Permissions> toList() {
+        return new ArrayList<>(toEnumSet());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PermissionSet && ((PermissionSet) o).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mask);
+    }
+
+    @Override
+    public String toString() {
+        return toEnumSet().toString();
+    }
+}
@@ -1,14 +1,74 @@
 package com.issues;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 
 public enum Permissions {
     ADMIN, USER, MANAGER;
 
+    /**
+     * {@link #values()} clones the backing array on every call, so lookups go through maps built once at class load.
+     */
+    private static final Map<String, Permissions> BY_TYPE;
+
+    private static final Map<String, Permissions> BY_TYPE_IGNORE_CASE;
+
+    static {
+        Map<String, Permissions> byType = new HashMap<>();
+        Map<String, Permissions> byTypeIgnoreCase = new HashMap<>();
+        for (Permissions permission : values()) {
+            byType.put(permission.toString(), permission);
+            byTypeIgnoreCase.put(permission.toString().toUpperCase(Locale.ROOT), permission);
+        }
+        BY_TYPE = Collections.unmodifiableMap(byType);
+        BY_TYPE_IGNORE_CASE = Collections.unmodifiableMap(byTypeIgnoreCase);
+    }
+
+    /**
+     * Stream based lookup. Kept as an example, however, it scans all the values on every call.
+     * Please, use {@link #byType(String)} or {@link #findByType(String)} instead.
+     */
     public Permissions getByType(final String strPermission) {
         return Arrays.stream(Permissions.values())
                 .filter(permission -> permission.toString().equals(strPermission))
                 .findFirst()
                 .get();
     }
+
+    /**
+     * Constant time lookup with the same contract as {@link #getByType(String)}.
+     * @param strPermission
+     * @return
+     * @throws NoSuchElementException if there is no permission with such name.
+     */
+    public static Permissions byType(final String strPermission) {
+        return findByType(strPermission)
+                .orElseThrow(() -> new NoSuchElementException("Unknown permission: " + strPermission));
+    }
+
+    /**
+     * Constant time lookup which never throws.
+     * @param strPermission
+     * @return
+     */
+    public static Optional<Permissions> findByType(final String strPermission) {
+        return Optional.ofNullable(strPermission)
+                .map(BY_TYPE::get);
+    }
+
+    /**
+     * The same as {@link #findByType(String)}, however, name comparison ignores case (e.g. "admin" or "Admin" from
+     * request headers).
+     * @param strPermission
+     * @return
+     */
+    public static Optional<Permissions> findByTypeIgnoreCase(final String strPermission) {
+        return Optional.ofNullable(strPermission)
+                .map(s -> BY_TYPE_IGNORE_CASE.get(s.toUpperCase(Locale.ROOT)));
+    }
 }
@@ -1,10 +1,5 @@
 package com.issues;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.apache.commons.lang3.builder.ToStringStyle;
-
 import java.util.List;
 import java.util.Optional;
 
@@ -12,16 +7,46 @@ import java.util.Optional;
  * Recommended to change default Idea template for equals/hashCode/toString generation.
  * At minimum, we are expecting toString for all domain classes. Reflection methods are quite good due to they will
  * automatically pick up new fields (e.g. you can generate them and forget).
+ *
+ * However, commons-lang3 reflection builders walk the fields on every call, which is too slow for a class used as a
+ * {@code HashMap} key. {@link ObjectMethods} keeps the "pick up new fields" property and resolves fields only once.
+ * Users which will not be modified anymore can be {@link #freeze() frozen}, in that case hash code is cached.
+ *
+ * Setters do not notify anybody by default, please, see {@link UserChangeTracker} to keep derived structures in sync.
  */
 public class User {
+    private static final ObjectMethods<User> OBJECT_METHODS = ObjectMethods.of(User.class);
+
     private List<Permissions> permissions;
 
+    /**
+     * Bitmask snapshot of {@link #permissions} taken in {@link #setPermissions(List)}. Transient, so reflection based
+     * equals/hashCode/toString keep ignoring it.
+     */
+    private transient PermissionSet permissionSet = PermissionSet.EMPTY;
+
     private Optional<User> parent;
 
     private int id;
 
+    private transient volatile boolean frozen;
+
+    private transient int cachedHashCode;
+
+    /**
+     * {@code null} unless user is tracked, so untracked users pay a single field read per setter call.
+     */
+    private transient volatile UserChangeTracker changeTracker;
+
+    /**
+     * For flyweight views, see {@link UserTable}.
+     */
+    User() {
+    }
+
     private User(Builder builder) {
         setPermissions(builder.permissions);
+        setId(builder.id);
     }
 
     public static Builder newBuilder() {
@@ -33,7 +58,31 @@ public class User {
     }
 
     public void setPermissions(List<Permissions> permissions) {
+        checkNotFrozen();
+        PermissionSet oldPermissionSet = this.permissionSet;
         this.permissions = permissions;
+        this.permissionSet = PermissionSet.of(permissions);
+        UserChangeTracker tracker = changeTracker;
+        if (tracker != null) {
+            tracker.record(this, UserChange.Field.PERMISSIONS, oldPermissionSet, permissionSet);
+        }
+    }
+
+    /**
+     * Please, note that in-place modifications of the list returned by {@link #getPermissions()} are not reflected here,
+     * call {@link #setPermissions(List)} instead.
+     * @return
+     */
+    public PermissionSet getPermissionSet() {
+        return permissionSet;
+    }
+
+    public void setPermissionSet(PermissionSet permissionSet) {
+        setPermissions(permissionSet.toList());
+    }
+
+    public boolean hasPermission(Permissions permission) {
+        return permissionSet.has(permission);
     }
 
     public Optional<User> getParent() {
@@ -41,22 +90,55 @@ public class User {
     }
 
     public void setParent(Optional<User> parent) {
+        checkNotFrozen();
+        Optional<User> oldParent = this.parent;
         this.parent = parent;
+        UserChangeTracker tracker = changeTracker;
+        if (tracker != null) {
+            tracker.record(this, UserChange.Field.PARENT, parentOrNull(oldParent), parentOrNull(parent));
+        }
+    }
+
+    /**
+     * Makes this user and the whole parent chain read-only. Setters of frozen user throw {@link IllegalStateException}
+     * and {@link #hashCode()} is computed only once.
+     * @return this user
+     */
+    public User freeze() {
+        User user = this;
+        while (user != null && !user.frozen) {
+            user.frozen = true;
+            user = user.parent == null ? null : user.parent.orElse(null);
+        }
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
     }
 
     @Override
     public boolean equals(Object o) {
-       return EqualsBuilder.reflectionEquals(this, o);
+       return OBJECT_METHODS.equals(this, o);
     }
 
     @Override
     public int hashCode() {
-        return HashCodeBuilder.reflectionHashCode(this);
+        if (!frozen) {
+            return OBJECT_METHODS.hashCode(this);
+        }
+        //racy single-check idiom, the same as String#hashCode
+        int h = cachedHashCode;
+        if (h == 0) {
+            h = OBJECT_METHODS.hashCode(this);
+            cachedHashCode = h;
+        }
+        return h;
     }
 
     @Override
     public String toString() {
-        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+        return OBJECT_METHODS.toString(this);
     }
 
     public int getId() {
@@ -64,7 +146,40 @@ public class User {
     }
 
     public void setId(int id) {
+        checkNotFrozen();
+        int oldId = this.id;
         this.id = id;
+        UserChangeTracker tracker = changeTracker;
+        if (tracker != null) {
+            tracker.record(this, UserChange.Field.ID, oldId, id);
+        }
+    }
+
+    void setChangeTracker(UserChangeTracker tracker) {
+        synchronized (this) {
+            if (changeTracker != null && changeTracker != tracker) {
+                throw new IllegalStateException("User with id=" + id + " is already tracked by another tracker.");
+            }
+            changeTracker = tracker;
+        }
+    }
+
+    void removeChangeTracker(UserChangeTracker tracker) {
+        synchronized (this) {
+            if (changeTracker == tracker) {
+                changeTracker = null;
+            }
+        }
+    }
+
+    private static User parentOrNull(Optional<User> parent) {
+        return parent == null ? null : parent.orElse(null);
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("User with id=" + id + " is frozen.");
+        }
     }
 
     public static final class Builder {
@@ -0,0 +1,66 @@
+package com.issues;
+
+/**
+ * Change of a single {@link User} field, see {@link UserChangeTracker}. Several changes of the same field between
+ * deliveries are coalesced into one, with the first old value and the last new value.
+ *
+ * Values are: {@code Integer} for {@link Field#ID}, {@link PermissionSet} for {@link Field#PERMISSIONS} (immutable,
+ * unlike the list passed to the setter), and {@code User} or {@code null} for {@link Field#PARENT}.
+ */
+public final class UserChange {
+
+    public enum Field {
+        ID, PERMISSIONS, PARENT
+    }
+
+    private final User user;
+
+    private final Field field;
+
+    private final Object oldValue;
+
+    private final Object newValue;
+
+    UserChange(User user, Field field, Object oldValue, Object newValue) {
+        this.user = user;
+        this.field = field;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * @return current id of the user, for {@link Field#ID} changes the old one is {@link #getOldValue()}.
+     */
+    public int getUserId() {
+        return user.getId();
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Object getOldValue() {
+        return oldValue;
+    }
+
+    public Object getNewValue() {
+        return newValue;
+    }
+
+    @Override
+    public String toString() {
+        return "UserChange[id=" + user.getId() + ",field=" + field
+                + ",oldValue=" + render(oldValue) + ",newValue=" + render(newValue) + "]";
+    }
+
+    /**
+     * Parent is rendered by id, the whole parent chain is too long for a log line.
+     */
+    private static Object render(Object value) {
+        return value instanceof User ? "User[id=" + ((User) value).getId() + "]" : value;
+    }
+}
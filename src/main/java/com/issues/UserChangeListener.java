@@ -0,0 +1,12 @@
+package com.issues;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface UserChangeListener {
+
+    /**
+     * @param changes coalesced changes, in order of the first change of every user field. List is read-only.
+     */
+    void onChanges(List<UserChange> changes);
+}
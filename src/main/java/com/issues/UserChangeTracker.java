@@ -0,0 +1,253 @@
+package com.issues;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Opt-in change notifications for {@link User}: setters of tracked users record changes here, and listeners receive
+ * them in batches, so secondary indexes and caches could be updated incrementally instead of being rebuilt.
+ *
+ * Untracked users pay a single field read per setter call. For tracked users changes are buffered and coalesced by
+ * user and field: e.g. a thousand {@code setPermissions} calls on the same user during a bulk import produce a single
+ * change, and changes which end with the original value are not delivered at all.
+ *
+ * Changes are delivered on {@link #flush()}, {@link #flushIfNeeded()} and at the end of {@link #batch(Runnable)}, in
+ * the calling thread, so listeners which are not thread safe (e.g. {@link com.issues.collections.UserPermissionIndex})
+ * are updated by the same thread which changes users. Setters never deliver themselves: they could be called under
+ * locks which listeners need as well (e.g.
+ * {@link com.issues.hierarchy.EffectivePermissionCache#setPermissions(User, List)}). Please, do not flush while holding
+ * such locks. Bulk imports could call {@link #flushIfNeeded()} between users to keep at most {@code maxPendingChanges}
+ * changes buffered.
+ *
+ * Alternatively, tracker could be created with {@code overflowExecutor}: once {@code maxPendingChanges} is reached,
+ * {@link #flush()} is scheduled there. In that case listeners are called concurrently with the code changing users and
+ * should be thread safe.
+ *
+ * Deliveries are serialized, so listeners see batches in order. Every listener gets the whole batch even if another
+ * one fails. Users are tracked by identity, a user could be tracked by a single tracker only.
+ */
+public class UserChangeTracker {
+
+    private static final int DEFAULT_MAX_PENDING_CHANGES = 10_000;
+
+    private final int maxPendingChanges;
+
+    private final Executor overflowExecutor;
+
+    private final AtomicBoolean overflowFlushScheduled = new AtomicBoolean();
+
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Object deliveryLock = new Object();
+
+    /**
+     * Guarded by {@code this}.
+     */
+    private Map<ChangeKey, PendingChange> pending = new LinkedHashMap<>();
+
+    public UserChangeTracker() {
+        this(DEFAULT_MAX_PENDING_CHANGES);
+    }
+
+    /**
+     * @param maxPendingChanges amount of coalesced changes after which {@link #flushIfNeeded()} delivers them.
+     */
+    public UserChangeTracker(int maxPendingChanges) {
+        this(maxPendingChanges, null);
+    }
+
+    /**
+     * @param maxPendingChanges amount of coalesced changes after which {@link #flush()} is scheduled.
+     * @param overflowExecutor runs scheduled {@link #flush()}, should not run it in the calling thread. Listeners should
+     *                         be thread safe, their exceptions are left to the executor. {@code null} to deliver
+     *                         changes only in the calling thread.
+     */
+    public UserChangeTracker(int maxPendingChanges, Executor overflowExecutor) {
+        if (maxPendingChanges <= 0) {
+            throw new IllegalArgumentException("maxPendingChanges should be positive: " + maxPendingChanges);
+        }
+        this.maxPendingChanges = maxPendingChanges;
+        this.overflowExecutor = overflowExecutor;
+    }
+
+    public void addListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(UserChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param user
+     * @throws IllegalStateException if user is tracked by another tracker.
+     */
+    public void track(User user) {
+        user.setChangeTracker(this);
+    }
+
+    public void track(Collection<User> users) {
+        for (User user : users) {
+            track(user);
+        }
+    }
+
+    /**
+     * Stops tracking, changes recorded before are still delivered.
+     * @param user
+     */
+    public void untrack(User user) {
+        user.removeChangeTracker(this);
+    }
+
+    /**
+     * Runs {@code action} and delivers all the changes made by it, and pending before, in a single batch, unless
+     * they are delivered earlier by {@link #flushIfNeeded()} or {@code overflowExecutor}.
+     * @param action
+     * @throws RuntimeException thrown by {@code action} or by a listener, see {@link #flush()}.
+     */
+    public void batch(Runnable action) {
+        try {
+            action.run();
+        } finally {
+            flush();
+        }
+    }
+
+    /**
+     * Delivers pending changes to listeners.
+     * @throws RuntimeException the first one thrown by listeners, after all the listeners got the batch. Others are
+     * added to it as suppressed.
+     */
+    public void flush() {
+        overflowFlushScheduled.set(false);
+        synchronized (deliveryLock) {
+            Map<ChangeKey, PendingChange> changes;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                changes = pending;
+                pending = new LinkedHashMap<>();
+            }
+            List<UserChange> batch = new ArrayList<>(changes.size());
+            for (PendingChange change : changes.values()) {
+                if (!change.isNoop()) {
+                    batch.add(new UserChange(change.user, change.field, change.oldValue, change.newValue));
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            deliver(Collections.unmodifiableList(batch));
+        }
+    }
+
+    /**
+     * Delivers pending changes, in the calling thread, if there are at least {@code maxPendingChanges} of them.
+     * @return whether changes were delivered.
+     * @throws RuntimeException thrown by a listener, see {@link #flush()}.
+     */
+    public boolean flushIfNeeded() {
+        if (getPendingCount() < maxPendingChanges) {
+            return false;
+        }
+        flush();
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Called by {@link User} setters of tracked users. Never delivers changes itself, see class description.
+     */
+    void record(User user, UserChange.Field field, Object oldValue, Object newValue) {
+        boolean full;
+        synchronized (this) {
+            ChangeKey key = new ChangeKey(user, field);
+            PendingChange change = pending.get(key);
+            if (change == null) {
+                pending.put(key, new PendingChange(user, field, oldValue, newValue));
+            } else {
+                change.newValue = newValue;
+            }
+            full = pending.size() >= maxPendingChanges;
+        }
+        if (full && overflowExecutor != null && overflowFlushScheduled.compareAndSet(false, true)) {
+            overflowExecutor.execute(this::flush);
+        }
+    }
+
+    private void deliver(List<UserChange> batch) {
+        RuntimeException failure = null;
+        for (UserChangeListener listener : listeners) {
+            try {
+                listener.onChanges(batch);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static final class PendingChange {
+        private final User user;
+        private final UserChange.Field field;
+        private final Object oldValue;
+        private Object newValue;
+
+        private PendingChange(User user, UserChange.Field field, Object oldValue, Object newValue) {
+            this.user = user;
+            this.field = field;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        /**
+         * Parent is compared by identity, as different users could be equal.
+         */
+        private boolean isNoop() {
+            return field == UserChange.Field.PARENT ? oldValue == newValue : Objects.equals(oldValue, newValue);
+        }
+    }
+
+    private static final class ChangeKey {
+        private final User user;
+        private final UserChange.Field field;
+
+        private ChangeKey(User user, UserChange.Field field) {
+            this.user = user;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChangeKey)) {
+                return false;
+            }
+            ChangeKey other = (ChangeKey) o;
+            return other.user == user && other.field == field;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(user) + field.ordinal();
+        }
+    }
+}
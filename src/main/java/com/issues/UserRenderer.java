@@ -0,0 +1,160 @@
+package com.issues;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Renders {@link User} straight into caller supplied {@link Appendable} ({@link StringBuilder}, {@link java.io.Writer},
+ * {@link java.nio.CharBuffer} and so on), in the same format as {@link User#toString()}: fields in declaration order,
+ * see {@link ObjectMethods}.
+ *
+ * Unlike {@link User#toString()}, it does not create intermediate strings for every parent, renders at most
+ * {@code maxParentDepth} parents and stops on cycles in parent chain. For logging, please, use {@link #lazy(User)}:
+ * user is rendered only if the message is actually written.
+ *
+ * Instances are immutable and thread safe.
+ */
+public final class UserRenderer {
+
+    public static final UserRenderer DEFAULT = new UserRenderer(8);
+
+    private final int maxParentDepth;
+
+    public UserRenderer(int maxParentDepth) {
+        if (maxParentDepth < 0) {
+            throw new IllegalArgumentException("maxParentDepth should not be negative: " + maxParentDepth);
+        }
+        this.maxParentDepth = maxParentDepth;
+    }
+
+    public <A extends Appendable> A render(User user, A out) throws IOException {
+        if (user == null) {
+            out.append("null");
+        } else {
+            render(user, user, 0, out);
+        }
+        return out;
+    }
+
+    public StringBuilder render(User user, StringBuilder out) {
+        try {
+            render(user, (Appendable) out);
+            return out;
+        } catch (IOException e) {
+            //StringBuilder never throws IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String toString(User user) {
+        return render(user, new StringBuilder(64)).toString();
+    }
+
+    /**
+     * @param user
+     * @return object which renders user in its {@link Object#toString()}, e.g. for {@code log.debug("User {}", lazy(user))}.
+     */
+    public Object lazy(User user) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return UserRenderer.this.toString(user);
+            }
+        };
+    }
+
+    /**
+     * The same as {@link #lazy(User)}, for APIs accepting {@link Supplier}, e.g. {@code java.util.logging.Logger#fine}.
+     * @param user
+     * @return
+     */
+    public Supplier<String> supplier(User user) {
+        return () -> toString(user);
+    }
+
+    private void render(User root, User user, int depth, Appendable out) throws IOException {
+        out.append("User[permissions=");
+        appendPermissions(user.getPermissions(), out);
+        out.append(",parent=");
+        Optional<User> parentOptional = user.getParent();
+        User parent = parentOptional == null ? null : parentOptional.orElse(null);
+        if (parentOptional == null) {
+            out.append("<null>");
+        } else if (parent == null) {
+            out.append("Optional.empty");
+        } else if (depth >= maxParentDepth) {
+            out.append("Optional[...]");
+        } else if (isOnPath(root, depth, parent)) {
+            out.append("Optional[<cycle id=");
+            appendInt(parent.getId(), out);
+            out.append(">]");
+        } else {
+            out.append("Optional[");
+            render(root, parent, depth + 1, out);
+            out.append(']');
+        }
+        out.append(",id=");
+        appendInt(user.getId(), out);
+        out.append(']');
+    }
+
+    /**
+     * Checks whether {@code user} is one of {@code depth + 1} users already rendered, starting from {@code root}.
+     * Walks the chain again instead of keeping visited set, as depth is small and it does not allocate.
+     */
+    private static boolean isOnPath(User root, int depth, User user) {
+        User current = root;
+        for (int i = 0; i <= depth && current != null; i++) {
+            if (current == user) {
+                return true;
+            }
+            Optional<User> parent = current.getParent();
+            current = parent == null ? null : parent.orElse(null);
+        }
+        return false;
+    }
+
+    private static void appendPermissions(List<Permissions> permissions, Appendable out) throws IOException {
+        if (permissions == null) {
+            out.append("<null>");
+            return;
+        }
+        out.append('[');
+        int size = permissions.size();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Permissions permission = permissions.get(i);
+            out.append(permission == null ? "null" : permission.name());
+        }
+        out.append(']');
+    }
+
+    /**
+     * {@link Appendable} has no {@code append(int)}, digits are written one by one to avoid {@link Integer#toString()}.
+     */
+    private static void appendInt(int value, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
+            return;
+        }
+        if (value == Integer.MIN_VALUE) {
+            out.append("-2147483648");
+            return;
+        }
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.issues;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Binary on-disk snapshot of {@link UserTable}, read via memory mapping without deserialization: opening a snapshot
+ * only maps the file, lookups read mapped pages directly, so even multi-GB snapshots are available right away.
+ *
+ * Format (big endian):
+ * <pre>
+ * header,  32 bytes: int magic, int version, long record count, long records offset, long index offset
+ * records, 16 bytes each: int id, int parent ordinal (-1 if none), long permission mask
+ * index,   8 bytes each, sorted by id: int id, int ordinal
+ * </pre>
+ * Parent is stored as ordinal, so {@link #getParentOrdinal(int)} is O(1), parent id is the id of that record.
+ * Index allows O(log n) lookups by user id.
+ */
+public class UserSnapshot implements AutoCloseable {
+
+    public static final int MAGIC = 0x55534E50; //"USNP"
+
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int RECORD_SIZE = 16;
+
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    /**
+     * Single {@link MappedByteBuffer} could not exceed 2GB, so file is mapped in segments. Segment size is a multiple of
+     * record and index entry size, so values never cross segment boundary.
+     */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer[] segments;
+
+    private final long recordCount;
+
+    private final long recordsOffset;
+
+    private final long indexOffset;
+
+    private UserSnapshot(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+            throw new IOException("File is too small to be a user snapshot: " + fileSize + " bytes.");
+        }
+        int segmentCount = (int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long position = i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, fileSize - position));
+            segments[i].order(ByteOrder.BIG_ENDIAN);
+        }
+        if (getInt(0) != MAGIC) {
+            throw new IOException("Not a user snapshot, magic is " + Integer.toHexString(getInt(0)));
+        }
+        if (getInt(4) != VERSION) {
+            throw new IOException("Unsupported user snapshot version " + getInt(4) + ", expected " + VERSION);
+        }
+        this.recordCount = getLong(8);
+        this.recordsOffset = getLong(16);
+        this.indexOffset = getLong(24);
+        if (indexOffset + recordCount * INDEX_ENTRY_SIZE > fileSize) {
+            throw new IOException("User snapshot is truncated.");
+        }
+    }
+
+    public static UserSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new UserSnapshot(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes table sequentially, with a single buffer reused for the whole file.
+     * @param table
+     * @param path
+     * @throws IOException
+     */
+    public static void write(UserTable table, Path path) throws IOException {
+        int size = table.size();
+        long recordsOffset = HEADER_SIZE;
+        long indexOffset = recordsOffset + (long) size * RECORD_SIZE;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.BIG_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(recordsOffset).putLong(indexOffset);
+
+            for (int i = 0; i < size; i++) {
+                buffer = flushIfFull(channel, buffer, RECORD_SIZE);
+                buffer.putInt(table.getId(i)).putInt(table.getParentOrdinal(i)).putLong(table.getPermissionMask(i));
+            }
+
+            //id and ordinal are packed into a long, so sorting by it sorts by id
+            long[] index = new long[size];
+            for (int i = 0; i < size; i++) {
+                index[i] = ((long) table.getId(i) << 32) | (i & 0xFFFFFFFFL);
+            }
+            Arrays.sort(index);
+            for (long entry : index) {
+                buffer = flushIfFull(channel, buffer, INDEX_ENTRY_SIZE);
+                buffer.putLong(entry);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public long size() {
+        return recordCount;
+    }
+
+    public int getId(int ordinal) {
+        return getInt(recordPosition(ordinal));
+    }
+
+    /**
+     * @param ordinal
+     * @return parent ordinal or {@link UserTable#NO_PARENT}
+     */
+    public int getParentOrdinal(int ordinal) {
+        return getInt(recordPosition(ordinal) + 4);
+    }
+
+    public long getPermissionMask(int ordinal) {
+        return getLong(recordPosition(ordinal) + 8);
+    }
+
+    /**
+     * @param id
+     * @return ordinal of user with such id or -1. If there are several users with the same id, any of them.
+     */
+    public int findOrdinal(int id) {
+        long low = 0;
+        long high = recordCount - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            long position = indexOffset + middle * INDEX_ENTRY_SIZE;
+            int middleId = getInt(position);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return getInt(position + 4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param id
+     * @return permissions of user with such id, {@link PermissionSet#EMPTY} if there is no such user.
+     */
+    public PermissionSet getPermissions(int id) {
+        int ordinal = findOrdinal(id);
+        return ordinal < 0 ? PermissionSet.EMPTY : PermissionSet.fromMask(getPermissionMask(ordinal));
+    }
+
+    /**
+     * @param id
+     * @return id of parent of user with such id, {@code null} if there is no such user or it has no parent.
+     */
+    public Integer getParentId(int id) {
+        int ordinal = findOrdinal(id);
+        if (ordinal < 0) {
+            return null;
+        }
+        int parent = getParentOrdinal(ordinal);
+        return parent == UserTable.NO_PARENT ? null : getId(parent);
+    }
+
+    /**
+     * Loads the whole snapshot on heap.
+     * @return
+     */
+    public UserTable toUserTable() {
+        UserTable table = new UserTable((int) recordCount);
+        for (int i = 0; i < recordCount; i++) {
+            table.add(getId(i), getPermissionMask(i), getParentOrdinal(i));
+        }
+        return table;
+    }
+
+    /**
+     * Closes the file. Mapped memory is released by GC, as there is no public API to unmap it in Java 8.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long recordPosition(int ordinal) {
+        if (ordinal < 0 || ordinal >= recordCount) {
+            throw new IndexOutOfBoundsException("Ordinal: " + ordinal + ", Size: " + recordCount);
+        }
+        return recordsOffset + (long) ordinal * RECORD_SIZE;
+    }
+
+    private int getInt(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)].getInt((int) (position % SEGMENT_SIZE));
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)].getLong((int) (position % SEGMENT_SIZE));
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer buffer, int required) throws IOException {
+        if (buffer.remaining() < required) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,325 @@
+package com.issues;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar (struct of arrays) storage of users: ids are kept in {@code int[]}, permissions in {@code long[]} bitmasks
+ * (see {@link PermissionSet}) and parents as {@code int} ordinals of rows in the same table.
+ *
+ * Every {@link User} object costs a header, a boxed list of permissions and an {@link Optional} parent, and scans over
+ * {@code List<User>} jump all over the heap. Here a row takes 16 bytes and scans are sequential array reads.
+ *
+ * Existing APIs accepting {@code User}/{@code List<User>} can run on top of the table via {@link #view(int)} and
+ * {@link #asList()}: flyweight read-only {@code User} objects which read their state from the table. Views are cheap,
+ * but still allocated on every call, please, prefer column accessors in hot loops.
+ *
+ * Not thread safe for writes.
+ */
+public class UserTable {
+
+    public static final int NO_PARENT = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final long ALL_MASK = (1L << Permissions.values().length) - 1;
+
+    /**
+     * Unmodifiable permission lists for every possible mask, so views do not allocate them.
+     */
+    private static final List<List<Permissions>> PERMISSION_LISTS;
+
+    static {
+        int combinations = 1 << Permissions.values().length;
+        List<List<Permissions>> lists = new ArrayList<>(combinations);
+        for (int mask = 0; mask < combinations; mask++) {
+            lists.add(Collections.unmodifiableList(PermissionSet.fromMask(mask).toList()));
+        }
+        PERMISSION_LISTS = Collections.unmodifiableList(lists);
+    }
+
+    private int[] ids;
+
+    private long[] permissions;
+
+    private int[] parents;
+
+    private int size;
+
+    public UserTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UserTable(int capacity) {
+        ids = new int[capacity];
+        permissions = new long[capacity];
+        parents = new int[capacity];
+    }
+
+    /**
+     * Bulk load of users without permissions and parents, ids are never boxed.
+     * @param ids
+     * @return
+     */
+    public static UserTable fromIds(IntStream ids) {
+        UserTable table = new UserTable();
+        ids.forEachOrdered(id -> table.add(id, 0L, NO_PARENT));
+        return table;
+    }
+
+    /**
+     * Converts existing users. Parents which are not in {@code users} are added to the table as well.
+     * @param users
+     * @return
+     */
+    public static UserTable of(List<User> users) {
+        UserTable table = new UserTable(users.size());
+        Map<User, Integer> ordinals = new IdentityHashMap<>();
+        for (User user : users) {
+            table.addWithParents(user, ordinals);
+        }
+        return table;
+    }
+
+    /**
+     * @param id
+     * @param permissionMask see {@link PermissionSet#mask()}
+     * @param parentOrdinal ordinal of already added row or {@link #NO_PARENT}
+     * @return ordinal of the new row
+     * @throws IllegalArgumentException if mask has bits of unknown permissions or parent is unknown.
+     */
+    public int add(int id, long permissionMask, int parentOrdinal) {
+        checkMask(permissionMask);
+        if (parentOrdinal != NO_PARENT && (parentOrdinal < 0 || parentOrdinal >= size)) {
+            throw new IllegalArgumentException("Unknown parent ordinal: " + parentOrdinal);
+        }
+        if (size == ids.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            permissions = Arrays.copyOf(permissions, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+        }
+        ids[size] = id;
+        permissions[size] = permissionMask;
+        parents[size] = parentOrdinal;
+        return size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int ordinal) {
+        return ids[checkOrdinal(ordinal)];
+    }
+
+    public long getPermissionMask(int ordinal) {
+        return permissions[checkOrdinal(ordinal)];
+    }
+
+    /**
+     * @param ordinal
+     * @param permissionMask see {@link PermissionSet#mask()}
+     * @throws IllegalArgumentException if mask has bits of unknown permissions.
+     */
+    public void setPermissionMask(int ordinal, long permissionMask) {
+        checkOrdinal(ordinal);
+        permissions[ordinal] = checkMask(permissionMask);
+    }
+
+    /**
+     * @param ordinal
+     * @return parent ordinal or {@link #NO_PARENT}
+     */
+    public int getParentOrdinal(int ordinal) {
+        return parents[checkOrdinal(ordinal)];
+    }
+
+    public boolean hasPermission(int ordinal, Permissions permission) {
+        return (permissions[checkOrdinal(ordinal)] & PermissionSet.bit(permission)) != 0L;
+    }
+
+    /**
+     * @param permission
+     * @return ordinals of rows having {@code permission}, in table order.
+     */
+    public IntStream ordinalsWith(Permissions permission) {
+        long bit = PermissionSet.bit(permission);
+        return IntStream.range(0, size)
+                .filter(i -> (permissions[i] & bit) != 0L);
+    }
+
+    public int count(Permissions permission) {
+        long bit = PermissionSet.bit(permission);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if ((permissions[i] & bit) != 0L) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public User view(int ordinal) {
+        return new View(checkOrdinal(ordinal));
+    }
+
+    /**
+     * @return read-only list of views, backed by the table.
+     */
+    public List<User> asList() {
+        return new ViewList();
+    }
+
+    private int addWithParents(User user, Map<User, Integer> ordinals) {
+        Integer ordinal = ordinals.get(user);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        //parents have to be added first, chain is walked iteratively to support deep hierarchies
+        List<User> chain = new ArrayList<>();
+        Set<User> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (User current = user; current != null && !ordinals.containsKey(current);
+             current = current.getParent() == null ? null : current.getParent().orElse(null)) {
+            if (!seen.add(current)) {
+                throw new IllegalArgumentException("Cycle in parent chain of user with id=" + user.getId());
+            }
+            chain.add(current);
+        }
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            User current = chain.get(i);
+            User parent = current.getParent() == null ? null : current.getParent().orElse(null);
+            int parentOrdinal = parent == null ? NO_PARENT : ordinals.get(parent);
+            ordinals.put(current, add(current.getId(), PermissionSet.of(current.getPermissions()).mask(), parentOrdinal));
+        }
+        return ordinals.get(user);
+    }
+
+    /**
+     * Views index {@link #PERMISSION_LISTS} by mask, so only masks of existing permissions could be stored.
+     */
+    private static long checkMask(long permissionMask) {
+        if ((permissionMask & ~ALL_MASK) != 0L) {
+            throw new IllegalArgumentException("Unknown permission bits in mask: " + Long.toBinaryString(permissionMask));
+        }
+        return permissionMask;
+    }
+
+    private int checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Ordinal: " + ordinal + ", Size: " + size);
+        }
+        return ordinal;
+    }
+
+    private final class ViewList extends AbstractList<User> implements RandomAccess {
+
+        @Override
+        public User get(int index) {
+            return view(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Flyweight read-only {@link User}. Two views are equal if they point to the same row of the same table.
+     */
+    private final class View extends User {
+
+        private final int ordinal;
+
+        private View(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public int getId() {
+            return ids[ordinal];
+        }
+
+        @Override
+        public List<Permissions> getPermissions() {
+            return PERMISSION_LISTS.get((int) permissions[ordinal]);
+        }
+
+        @Override
+        public PermissionSet getPermissionSet() {
+            return PermissionSet.fromMask(permissions[ordinal]);
+        }
+
+        @Override
+        public boolean hasPermission(Permissions permission) {
+            return (permissions[ordinal] & PermissionSet.bit(permission)) != 0L;
+        }
+
+        @Override
+        public Optional<User> getParent() {
+            int parent = parents[ordinal];
+            return parent == NO_PARENT ? Optional.empty() : Optional.of(new View(parent));
+        }
+
+        @Override
+        public void setId(int id) {
+            throw new UnsupportedOperationException("User table views are read-only.");
+        }
+
+        @Override
+        public void setPermissions(List<Permissions> permissions) {
+            throw new UnsupportedOperationException("User table views are read-only.");
+        }
+
+        @Override
+        public void setPermissionSet(PermissionSet permissionSet) {
+            throw new UnsupportedOperationException("User table views are read-only.");
+        }
+
+        @Override
+        public void setParent(Optional<User> parent) {
+            throw new UnsupportedOperationException("User table views are read-only.");
+        }
+
+        @Override
+        public User freeze() {
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof View && ((View) o).ordinal == ordinal && ((View) o).table() == table();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(table()) + ordinal;
+        }
+
+        /**
+         * The same as {@link User#toString()} of the user this row was created from. Table does not keep {@code null}
+         * and empty parents apart, a root is rendered as a user built without parent.
+         */
+        @Override
+        public String toString() {
+            int parent = parents[ordinal];
+            return "User[permissions=" + getPermissions()
+                    + ",parent=" + (parent == NO_PARENT ? "<null>" : "Optional[" + new View(parent) + "]")
+                    + ",id=" + ids[ordinal] + "]";
+        }
+
+        private UserTable table() {
+            return UserTable.this;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.issues.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * List which supports only appends, optimized for {@link java.util.Map#merge} of values.
+ *
+ * Merge function like {@code (list1, list2) -> Stream.of(list1, list2).flatMap(...).collect(toList())} copies all the
+ * elements on every merge, so appending to a hot key is O(n^2). Here elements are stored in chunks: appending {@code k}
+ * elements costs O(k) and never copies already stored elements. Chunk sizes grow geometrically, so amount of chunks
+ * (and {@link #get(int)} cost) is logarithmic. Full chunks of another {@code AppendOnlyList} are shared, not copied.
+ *
+ * Not thread safe.
+ * @param <E>
+ */
+public class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int MIN_CHUNK_CAPACITY = 16;
+
+    /**
+     * Full chunks smaller than that are copied instead of shared, to keep amount of chunks low.
+     */
+    private static final int MIN_SHARED_CHUNK = 64;
+
+    private Object[][] chunks = new Object[4][];
+
+    /**
+     * {@code ends[i]} is the index after the last element of chunk {@code i}.
+     */
+    private int[] ends = new int[4];
+
+    private int chunkCount;
+
+    private int size;
+
+    public AppendOnlyList() {
+    }
+
+    public AppendOnlyList(Collection<? extends E> values) {
+        addAll(values);
+    }
+
+    /**
+     * Merge function for {@link java.util.Map#merge}: appends {@code right} to {@code left} if it is an
+     * {@code AppendOnlyList} already, otherwise copies {@code left} once. {@code right} is never modified.
+     * @param left
+     * @param right
+     * @param <E>
+     * @return
+     */
+    public static <E> List<E> concat(List<E> left, List<E> right) {
+        AppendOnlyList<E> result = left instanceof AppendOnlyList ? (AppendOnlyList<E>) left : new AppendOnlyList<>(left);
+        result.addAll(right);
+        return result;
+    }
+
+    @Override
+    public boolean add(E e) {
+        ensureTailCapacity(1);
+        chunks[chunkCount - 1][size - start(chunkCount - 1)] = e;
+        size++;
+        ends[chunkCount - 1] = size;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> values) {
+        if (values.isEmpty()) {
+            return false;
+        }
+        if (values instanceof AppendOnlyList) {
+            appendChunks((AppendOnlyList<? extends E>) values);
+        } else {
+            appendArray(values.toArray());
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int chunk = Arrays.binarySearch(ends, 0, chunkCount, index);
+        //binarySearch returns exact match when index is the end of a chunk, e.g. the first element of the next one
+        chunk = chunk >= 0 ? chunk + 1 : -chunk - 1;
+        return (E) chunks[chunk][index - start(chunk)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final int expectedSize = size;
+            private int chunk;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < expectedSize;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= expectedSize) {
+                    throw new NoSuchElementException();
+                }
+                while (index >= ends[chunk]) {
+                    chunk++;
+                }
+                return (E) chunks[chunk][index++ - start(chunk)];
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> action) {
+        for (int c = 0; c < chunkCount; c++) {
+            Object[] chunk = chunks[c];
+            int length = ends[c] - start(c);
+            for (int i = 0; i < length; i++) {
+                action.accept((E) chunk[i]);
+            }
+        }
+    }
+
+    private void appendArray(Object[] values) {
+        int offset = 0;
+        while (offset < values.length) {
+            ensureTailCapacity(values.length - offset);
+            int tail = chunkCount - 1;
+            int used = size - start(tail);
+            int count = Math.min(chunks[tail].length - used, values.length - offset);
+            System.arraycopy(values, offset, chunks[tail], used, count);
+            offset += count;
+            size += count;
+            ends[tail] = size;
+        }
+    }
+
+    private void appendChunks(AppendOnlyList<? extends E> other) {
+        int otherChunks = other.chunkCount;
+        for (int c = 0; c < otherChunks; c++) {
+            Object[] chunk = other.chunks[c];
+            int length = other.ends[c] - other.start(c);
+            if (length == chunk.length && length >= MIN_SHARED_CHUNK && isTailFull()) {
+                //full chunks are never written again, so it is safe to share them
+                addChunk(chunk);
+                size += length;
+                ends[chunkCount - 1] = size;
+            } else {
+                appendArray(Arrays.copyOf(chunk, length));
+            }
+        }
+    }
+
+    private void ensureTailCapacity(int required) {
+        if (isTailFull()) {
+            addChunk(new Object[Math.max(MIN_CHUNK_CAPACITY, Math.max(required, size >>> 1))]);
+            ends[chunkCount - 1] = size;
+        }
+    }
+
+    private boolean isTailFull() {
+        return chunkCount == 0 || size - start(chunkCount - 1) == chunks[chunkCount - 1].length;
+    }
+
+    private void addChunk(Object[] chunk) {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            ends = Arrays.copyOf(ends, chunkCount * 2);
+        }
+        chunks[chunkCount++] = chunk;
+    }
+
+    private int start(int chunk) {
+        return chunk == 0 ? 0 : ends[chunk - 1];
+    }
+}
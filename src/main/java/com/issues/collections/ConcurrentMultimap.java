@@ -0,0 +1,125 @@
+package com.issues.collections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Thread safe replacement for {@code Map<K, List<V>>} with {@code computeIfAbsent(key, ArrayList::new).addAll(values)}.
+ *
+ * Keys are kept in {@link ConcurrentHashMap}, which locks only a single bin on update (so writers of different keys do
+ * not block each other), and values of every key are kept in lock-free {@link ConcurrentLinkedQueue}. Readers never
+ * block, iteration is weakly consistent: it never throws {@link java.util.ConcurrentModificationException}, however, may
+ * or may not see values appended after iteration has started.
+ *
+ * Values are never removed one by one, only the whole key could be removed.
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentMultimap<K, V> {
+
+    private final ConcurrentHashMap<K, ConcurrentLinkedQueue<V>> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder size = new LongAdder();
+
+    public void put(K key, V value) {
+        bucket(key).add(value);
+        size.increment();
+    }
+
+    public void putAll(K key, Collection<? extends V> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        ConcurrentLinkedQueue<V> bucket = bucket(key);
+        for (V value : values) {
+            bucket.add(value);
+        }
+        size.add(values.size());
+    }
+
+    /**
+     * Loads values only if there is no such key yet. Loader is invoked at most once per key, concurrent callers of the
+     * same key wait for it, so please, keep it short.
+     * @param key
+     * @param loader
+     * @return values of the key, see {@link #get(Object)}
+     */
+    public Collection<V> computeIfAbsent(K key, Function<? super K, ? extends Collection<? extends V>> loader) {
+        ConcurrentLinkedQueue<V> bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> {
+                ConcurrentLinkedQueue<V> loaded = new ConcurrentLinkedQueue<>(loader.apply(k));
+                size.add(loaded.size());
+                return loaded;
+            });
+        }
+        return Collections.unmodifiableCollection(bucket);
+    }
+
+    /**
+     * @param key
+     * @return weakly consistent read-only view of values, empty if there is no such key.
+     */
+    public Collection<V> get(K key) {
+        ConcurrentLinkedQueue<V> bucket = buckets.get(key);
+        return bucket == null ? Collections.emptyList() : Collections.unmodifiableCollection(bucket);
+    }
+
+    /**
+     * @param key
+     * @return copy of values, in the order they were added.
+     */
+    public List<V> getSnapshot(K key) {
+        return new ArrayList<>(get(key));
+    }
+
+    public boolean containsKey(K key) {
+        return buckets.containsKey(key);
+    }
+
+    public Collection<V> removeAll(K key) {
+        ConcurrentLinkedQueue<V> bucket = buckets.remove(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        //values appended to the removed bucket concurrently with removal are lost, size may drift in that case
+        size.add(-bucket.size());
+        return bucket;
+    }
+
+    public Set<K> keySet() {
+        return Collections.unmodifiableSet(buckets.keySet());
+    }
+
+    /**
+     * Weakly consistent iteration over all keys.
+     * @param action
+     */
+    public void forEach(BiConsumer<? super K, ? super Collection<V>> action) {
+        for (Map.Entry<K, ConcurrentLinkedQueue<V>> entry : buckets.entrySet()) {
+            action.accept(entry.getKey(), Collections.unmodifiableCollection(entry.getValue()));
+        }
+    }
+
+    /**
+     * @return total amount of values, it is an estimate when there are concurrent updates.
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    private ConcurrentLinkedQueue<V> bucket(K key) {
+        //ConcurrentHashMap#computeIfAbsent locks the bin even if key is present in Java 8, so check with get first
+        ConcurrentLinkedQueue<V> bucket = buckets.get(key);
+        return bucket != null ? bucket : buckets.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>());
+    }
+}
@@ -0,0 +1,358 @@
+package com.issues.collections;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link java.util.Map#computeIfAbsent} on a plain map is a nice way to load values lazily, however, it is not a cache:
+ * map grows forever, values never expire and nothing prevents several threads from loading the same key at once.
+ *
+ * This cache:
+ * 1) keeps at most {@code maximumSize} entries, evicting least recently used ones;
+ * 2) expires entries {@code expireAfterWrite} after they were loaded;
+ * 3) reloads entries older than {@code refreshAfterWrite} in background, while readers keep getting the old value;
+ * 4) loads every key only once at a time: concurrent callers of a key being loaded wait for the same load;
+ * 5) collects hit/miss/load statistics, see {@link #stats()}.
+ *
+ * Recency of reads is tracked on a best effort basis: when access order is being updated by another thread, read is
+ * not recorded instead of waiting for the lock.
+ * @param <K>
+ * @param <V>
+ */
+public class LoadingCache<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<Entry<V>>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Keys in access order with their loaded futures, guarded by {@link #accessOrderLock}. Contains all the loaded keys.
+     * Invalidated keys are removed right away, expired ones when expiration is noticed by a read, otherwise they would
+     * take LRU capacity. Eviction removes only the future which is kept here, not a newer load of the same key.
+     */
+    private final LinkedHashMap<K, CompletableFuture<Entry<V>>> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReentrantLock accessOrderLock = new ReentrantLock();
+
+    private final Function<? super K, ? extends V> loader;
+
+    private final long maximumSize;
+
+    private final long expireAfterWriteNanos;
+
+    private final long refreshAfterWriteNanos;
+
+    private final Executor refreshExecutor;
+
+    private final LongSupplier ticker;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loadSuccesses = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private LoadingCache(Builder builder, Function<? super K, ? extends V> loader) {
+        this.loader = loader;
+        this.maximumSize = builder.maximumSize;
+        this.expireAfterWriteNanos = builder.expireAfterWrite.toNanos();
+        this.refreshAfterWriteNanos = builder.refreshAfterWrite.toNanos();
+        this.refreshExecutor = builder.refreshExecutor;
+        this.ticker = builder.ticker;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns cached value or loads it.
+     * @param key
+     * @return
+     * @throws CompletionException wrapping loader exception, if value was being loaded by another thread. Thread which
+     * invoked the loader gets original exception. Failed loads are not cached.
+     */
+    public V get(K key) {
+        while (true) {
+            CompletableFuture<Entry<V>> future = entries.get(key);
+            if (future == null) {
+                CompletableFuture<Entry<V>> created = new CompletableFuture<>();
+                future = entries.putIfAbsent(key, created);
+                if (future == null) {
+                    misses.increment();
+                    return load(key, created).value;
+                }
+            }
+
+            Entry<V> entry = future.join();
+            long now = ticker.getAsLong();
+            if (now - entry.writeTime >= expireAfterWriteNanos) {
+                if (entries.remove(key, future)) {
+                    removeAccessOrder(key, future);
+                }
+                continue;
+            }
+            hits.increment();
+            recordAccess(key);
+            if (now - entry.writeTime >= refreshAfterWriteNanos && entry.refreshing.compareAndSet(false, true)) {
+                refresh(key, future);
+            }
+            return entry.value;
+        }
+    }
+
+    /**
+     * @param key
+     * @return cached value or {@code null}, never loads.
+     */
+    public V getIfPresent(K key) {
+        CompletableFuture<Entry<V>> future = entries.get(key);
+        if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        Entry<V> entry = future.join();
+        return ticker.getAsLong() - entry.writeTime < expireAfterWriteNanos ? entry.value : null;
+    }
+
+    public void invalidate(K key) {
+        CompletableFuture<Entry<V>> removed = entries.remove(key);
+        if (removed != null) {
+            removeAccessOrder(key, removed);
+        }
+    }
+
+    public long estimatedSize() {
+        return entries.size();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), totalLoadTimeNanos.sum(),
+                evictions.sum());
+    }
+
+    private Entry<V> load(K key, CompletableFuture<Entry<V>> future) {
+        long start = ticker.getAsLong();
+        try {
+            Entry<V> entry = new Entry<>(loader.apply(key), ticker.getAsLong());
+            loadSuccesses.increment();
+            totalLoadTimeNanos.add(entry.writeTime - start);
+            future.complete(entry);
+            recordWrite(key, future);
+            return entry;
+        } catch (RuntimeException | Error e) {
+            loadFailures.increment();
+            totalLoadTimeNanos.add(ticker.getAsLong() - start);
+            entries.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void refresh(K key, CompletableFuture<Entry<V>> current) {
+        CompletableFuture.runAsync(() -> {
+            long start = ticker.getAsLong();
+            try {
+                Entry<V> entry = new Entry<>(loader.apply(key), ticker.getAsLong());
+                loadSuccesses.increment();
+                totalLoadTimeNanos.add(entry.writeTime - start);
+                replaceRefreshed(key, current, CompletableFuture.completedFuture(entry));
+            } catch (RuntimeException | Error e) {
+                loadFailures.increment();
+                totalLoadTimeNanos.add(ticker.getAsLong() - start);
+                //keep serving the old value, next read after refresh interval will try again
+                current.join().refreshing.set(false);
+            }
+        }, refreshExecutor);
+    }
+
+    private void recordAccess(K key) {
+        if (accessOrderLock.tryLock()) {
+            try {
+                accessOrder.get(key);
+            } finally {
+                accessOrderLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Entry could be invalidated right after it was loaded, in that case it is not recorded at all.
+     */
+    private void recordWrite(K key, CompletableFuture<Entry<V>> future) {
+        accessOrderLock.lock();
+        try {
+            if (entries.get(key) != future) {
+                return;
+            }
+            accessOrder.put(key, future);
+            Iterator<Map.Entry<K, CompletableFuture<Entry<V>>>> eldest = accessOrder.entrySet().iterator();
+            while (accessOrder.size() > maximumSize) {
+                Map.Entry<K, CompletableFuture<Entry<V>>> evicted = eldest.next();
+                eldest.remove();
+                if (entries.remove(evicted.getKey(), evicted.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            accessOrderLock.unlock();
+        }
+    }
+
+    /**
+     * Under {@link #accessOrderLock}, so eviction never sees entries and access order pointing to different futures.
+     * If entry was invalidated or evicted meanwhile, refreshed value is dropped.
+     */
+    private void replaceRefreshed(K key, CompletableFuture<Entry<V>> current, CompletableFuture<Entry<V>> refreshed) {
+        accessOrderLock.lock();
+        try {
+            if (entries.replace(key, current, refreshed)) {
+                accessOrder.replace(key, current, refreshed);
+            }
+        } finally {
+            accessOrderLock.unlock();
+        }
+    }
+
+    /**
+     * Key could be loaded again right after removal, so it is kept if there is a newer future for it.
+     */
+    private void removeAccessOrder(K key, CompletableFuture<Entry<V>> removed) {
+        accessOrderLock.lock();
+        try {
+            accessOrder.remove(key, removed);
+        } finally {
+            accessOrderLock.unlock();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long writeTime;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(V value, long writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * Snapshot of cache statistics.
+     */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long loadSuccessCount;
+        private final long loadFailureCount;
+        private final long totalLoadTimeNanos;
+        private final long evictionCount;
+
+        private Stats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                      long totalLoadTimeNanos, long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadSuccessCount = loadSuccessCount;
+            this.loadFailureCount = loadFailureCount;
+            this.totalLoadTimeNanos = totalLoadTimeNanos;
+            this.evictionCount = evictionCount;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        public long getLoadSuccessCount() {
+            return loadSuccessCount;
+        }
+
+        public long getLoadFailureCount() {
+            return loadFailureCount;
+        }
+
+        public double getAverageLoadPenaltyNanos() {
+            long loads = loadSuccessCount + loadFailureCount;
+            return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats[hits=" + hitCount + ",misses=" + missCount + ",loadSuccesses=" + loadSuccessCount
+                    + ",loadFailures=" + loadFailureCount + ",averageLoadPenaltyNanos=" + getAverageLoadPenaltyNanos()
+                    + ",evictions=" + evictionCount + "]";
+        }
+    }
+
+    public static final class Builder {
+        private long maximumSize = Long.MAX_VALUE;
+        private Duration expireAfterWrite = Duration.ofNanos(Long.MAX_VALUE);
+        private Duration refreshAfterWrite = Duration.ofNanos(Long.MAX_VALUE);
+        private Executor refreshExecutor = ForkJoinPool.commonPool();
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        public Builder withMaximumSize(long val) {
+            maximumSize = val;
+            return this;
+        }
+
+        public Builder withExpireAfterWrite(Duration val) {
+            expireAfterWrite = val;
+            return this;
+        }
+
+        public Builder withRefreshAfterWrite(Duration val) {
+            refreshAfterWrite = val;
+            return this;
+        }
+
+        public Builder withRefreshExecutor(Executor val) {
+            refreshExecutor = val;
+            return this;
+        }
+
+        /**
+         * Source of nanoseconds, {@link System#nanoTime()} by default. Could be replaced in tests.
+         * @param val
+         * @return
+         */
+        public Builder withTicker(LongSupplier val) {
+            ticker = val;
+            return this;
+        }
+
+        public <K, V> LoadingCache<K, V> build(Function<? super K, ? extends V> loader) {
+            return new LoadingCache<>(this, loader);
+        }
+    }
+}
@@ -1,11 +1,12 @@
 package com.issues.collections;
 
 import com.issues.User;
+import com.issues.metrics.MetricsRegistry;
+import com.issues.metrics.Timer;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Java8 added a couple of useful methods into Collection framework. Most of them a highly connected with lambda introduction,
@@ -17,6 +18,16 @@ import java.util.stream.Stream;
 
 public class MapsMethods {
 
+    private final Timer heavyMethodTimer;
+
+    public MapsMethods() {
+        this(MetricsRegistry.noop());
+    }
+
+    public MapsMethods(MetricsRegistry metrics) {
+        this.heavyMethodTimer = metrics.timer("MapsMethods.heavyMethodToGetUsers");
+    }
+
     /**
      * Examples of {@link Map#computeIfAbsent}, {@link Map#compute} and
      * {@link Map#merge}
@@ -38,11 +49,22 @@ public class MapsMethods {
                 .computeIfAbsent(key, ArrayList<User>::new)
                 .addAll(values);
 
-        //another example
+        //another example. Please, note that merge function which builds a new list (e.g.
+        //Stream.of(list1, list2).flatMap(Collection::stream).collect(toList())) copies all the values on every merge.
+        //AppendOnlyList::concat appends only new values and does not modify list passed by the caller.
         usersByPermissions
-                .merge(key, values, (list1, list2) -> Stream.of(list1, list2)
-                                                        .flatMap(Collection::stream)
-                                                        .collect(Collectors.toList()));
+                .merge(key, values, AppendOnlyList::concat);
+    }
+
+    /**
+     * None of the examples above is thread safe: {@link HashMap} and {@link ArrayList} could be corrupted by concurrent
+     * updates, and wrapping them into a global lock makes all the writers wait for each other.
+     * {@link ConcurrentMultimap} locks only a single key on creation and appends values without locks.
+     */
+    private final ConcurrentMultimap<Integer, User> concurrentUsersByPermissions = new ConcurrentMultimap<>();
+
+    public void addUserToMapConcurrent(Integer key, List<User> values) {
+        concurrentUsersByPermissions.putAll(key, values);
     }
 
     /**
@@ -65,7 +87,30 @@ public class MapsMethods {
     }
 
 
+    public void addUsersLazyConcurrent(Integer key) {
+        concurrentUsersByPermissions.computeIfAbsent(key, this::heavyMethodToGetUsers);
+    }
+
+    /**
+     * {@link Map#computeIfAbsent(Object, Function)} is still not a cache: entries are never evicted or expired.
+     * For values which are expensive to load, please, use real cache.
+     */
+    private final LoadingCache<Integer, List<User>> usersCache = LoadingCache.newBuilder()
+            .withMaximumSize(10_000)
+            .withExpireAfterWrite(Duration.ofMinutes(10))
+            .withRefreshAfterWrite(Duration.ofMinutes(1))
+            .build(this::heavyMethodToGetUsers);
+
+    public List<User> getUsersCached(Integer key) {
+        return usersCache.get(key);
+    }
+
     private List<User> heavyMethodToGetUsers(Integer userPermission) {
-        return new ArrayList<>();
+        long start = heavyMethodTimer.start();
+        try {
+            return new ArrayList<>();
+        } finally {
+            heavyMethodTimer.stop(start);
+        }
     }
 }
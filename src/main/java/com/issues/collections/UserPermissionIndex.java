@@ -0,0 +1,170 @@
+package com.issues.collections;
+
+import com.issues.PermissionSet;
+import com.issues.Permissions;
+import com.issues.User;
+import com.issues.UserChange;
+import com.issues.UserChangeListener;
+import com.issues.UserChangeTracker;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Inverted index from {@link Permissions} to users. Every user gets an ordinal (position in the source list) and every
+ * permission keeps a {@link BitSet} of ordinals of users having it. As a result, queries like "MANAGER and not ADMIN"
+ * are answered with a couple of word-wise bit operations instead of scanning permissions of every user.
+ *
+ * Index is a snapshot, use {@link #add(User)} for new users and {@link #updatePermissions(User)} when permissions of
+ * indexed users change, or subscribe {@link #asChangeListener()} to {@link UserChangeTracker}. Not thread safe.
+ */
+public class UserPermissionIndex {
+
+    private final List<User> users = new ArrayList<>();
+
+    private final Map<User, Integer> ordinals = new IdentityHashMap<>();
+
+    private final Map<Permissions, BitSet> bitmaps = new EnumMap<>(Permissions.class);
+
+    public UserPermissionIndex() {
+        for (Permissions permission : Permissions.values()) {
+            bitmaps.put(permission, new BitSet());
+        }
+    }
+
+    public static UserPermissionIndex of(List<User> users) {
+        UserPermissionIndex index = new UserPermissionIndex();
+        users.forEach(index::add);
+        return index;
+    }
+
+    /**
+     * Adding the same user twice has no effect.
+     * @param user
+     */
+    public void add(User user) {
+        if (ordinals.containsKey(user)) {
+            return;
+        }
+        int ordinal = users.size();
+        users.add(user);
+        ordinals.put(user, ordinal);
+        setPermissions(ordinal, PermissionSet.of(user.getPermissions()));
+    }
+
+    /**
+     * Re-reads permissions of already indexed user, unknown users are ignored.
+     * @param user
+     */
+    public void updatePermissions(User user) {
+        Integer ordinal = ordinals.get(user);
+        if (ordinal != null) {
+            setPermissions(ordinal, PermissionSet.of(user.getPermissions()));
+        }
+    }
+
+    /**
+     * @return listener which applies permission changes of indexed users, e.g. during bulk imports. Index is not thread
+     * safe, so the listener should be called by the thread which uses the index: please, subscribe it to a tracker
+     * without {@code overflowExecutor}, see {@link UserChangeTracker}, or synchronize index access externally.
+     */
+    public UserChangeListener asChangeListener() {
+        return changes -> {
+            for (UserChange change : changes) {
+                Integer ordinal = ordinals.get(change.getUser());
+                if (ordinal != null && change.getField() == UserChange.Field.PERMISSIONS) {
+                    setPermissions(ordinal, (PermissionSet) change.getNewValue());
+                }
+            }
+        };
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * Users having all of the given permissions, in the order they were added.
+     * @param permissions
+     * @return
+     */
+    public List<User> withAll(Permissions... permissions) {
+        return select(PermissionSet.of(permissions), PermissionSet.EMPTY, PermissionSet.EMPTY);
+    }
+
+    public List<User> withAny(Permissions... permissions) {
+        BitSet result = new BitSet();
+        for (Permissions permission : permissions) {
+            result.or(bitmaps.get(permission));
+        }
+        return toUsers(result);
+    }
+
+    public List<User> without(Permissions... permissions) {
+        return select(PermissionSet.EMPTY, PermissionSet.EMPTY, PermissionSet.of(permissions));
+    }
+
+    /**
+     * Generic query: users having all of {@code all}, at least one of {@code any} (ignored if empty) and none of
+     * {@code none}.
+     * @param all
+     * @param any
+     * @param none
+     * @return
+     */
+    public List<User> select(PermissionSet all, PermissionSet any, PermissionSet none) {
+        return toUsers(selectOrdinals(all, any, none));
+    }
+
+    public BitSet selectOrdinals(PermissionSet all, PermissionSet any, PermissionSet none) {
+        BitSet result = new BitSet(users.size());
+        result.set(0, users.size());
+        BitSet anyOf = any.isEmpty() ? null : new BitSet();
+        for (Map.Entry<Permissions, BitSet> entry : bitmaps.entrySet()) {
+            if (all.has(entry.getKey())) {
+                result.and(entry.getValue());
+            }
+            if (none.has(entry.getKey())) {
+                result.andNot(entry.getValue());
+            }
+            if (anyOf != null && any.has(entry.getKey())) {
+                anyOf.or(entry.getValue());
+            }
+        }
+        if (anyOf != null) {
+            result.and(anyOf);
+        }
+        return result;
+    }
+
+    /**
+     * Index backed counterpart of {@code DoubleLoopsToLambda#containsPermissions}. Users which are not indexed are
+     * checked directly.
+     * @param permission
+     * @return
+     */
+    public Predicate<User> containsPermissions(Permissions permission) {
+        BitSet bitmap = bitmaps.get(permission);
+        return user -> {
+            Integer ordinal = ordinals.get(user);
+            return ordinal != null ? bitmap.get(ordinal) : user.hasPermission(permission);
+        };
+    }
+
+    private List<User> toUsers(BitSet ordinals) {
+        List<User> result = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            result.add(users.get(i));
+        }
+        return result;
+    }
+
+    private void setPermissions(int ordinal, PermissionSet permissions) {
+        bitmaps.forEach((permission, bitmap) -> bitmap.set(ordinal, permissions.has(permission)));
+    }
+}
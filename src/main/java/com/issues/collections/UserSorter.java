@@ -0,0 +1,375 @@
+package com.issues.collections;
+
+import com.issues.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+
+/**
+ * Sorts users by an {@code int} key, e.g. id, with the same result as {@code List.sort} with
+ * {@code Comparator.comparing(User::getId)} and its {@link #reversed()}, {@link #nullsFirst()} and {@link #nullsLast()}
+ * variants, but without boxing keys and calling comparators on every comparison.
+ *
+ * Keys are extracted once into an {@code int[]}, then keys are sorted together with original indexes: radix sort for
+ * large lists, {@link Arrays#sort(long[])} of packed key and index for small ones. Equal keys keep their original order,
+ * the same as in stable {@code List.sort}. For "first k users" please, use {@link #topK(int)} instead of sorting all
+ * of them.
+ *
+ * Instances are immutable and thread safe.
+ */
+public final class UserSorter {
+
+    private static final UserSorter BY_ID = new UserSorter(User::getId, false, NullOrder.FAIL);
+
+    /**
+     * Below this size packed keys are sorted by {@link Arrays#sort(long[])}, four radix passes over scratch arrays are
+     * not worth it.
+     */
+    private static final int RADIX_THRESHOLD = 4096;
+
+    private static final int RADIX_BITS = 8;
+
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private enum NullOrder {
+        FAIL, FIRST, LAST;
+
+        private NullOrder reversed() {
+            return this == FIRST ? LAST : this == LAST ? FIRST : FAIL;
+        }
+    }
+
+    private final ToIntFunction<? super User> keyExtractor;
+
+    private final boolean reversed;
+
+    private final NullOrder nullOrder;
+
+    private UserSorter(ToIntFunction<? super User> keyExtractor, boolean reversed, NullOrder nullOrder) {
+        this.keyExtractor = keyExtractor;
+        this.reversed = reversed;
+        this.nullOrder = nullOrder;
+    }
+
+    /**
+     * @return sorter by {@link User#getId()}, ascending, failing on {@code null} users.
+     */
+    public static UserSorter byId() {
+        return BY_ID;
+    }
+
+    public static UserSorter by(ToIntFunction<? super User> keyExtractor) {
+        if (keyExtractor == null) {
+            throw new IllegalArgumentException("keyExtractor should not be null");
+        }
+        return new UserSorter(keyExtractor, false, NullOrder.FAIL);
+    }
+
+    /**
+     * The same as {@link java.util.Comparator#reversed()}: descending keys, equal keys still keep original order. Null
+     * order is reversed as well, e.g. {@code nullsLast().reversed()} puts {@code null} users first, while
+     * {@code reversed().nullsLast()} keeps them last.
+     * @return
+     */
+    public UserSorter reversed() {
+        return new UserSorter(keyExtractor, !reversed, nullOrder.reversed());
+    }
+
+    /**
+     * The same as {@link java.util.Comparator#nullsFirst}: {@code null} users go first, in original order.
+     * @return
+     */
+    public UserSorter nullsFirst() {
+        return new UserSorter(keyExtractor, reversed, NullOrder.FIRST);
+    }
+
+    /**
+     * The same as {@link java.util.Comparator#nullsLast}: {@code null} users go last, in original order.
+     * @return
+     */
+    public UserSorter nullsLast() {
+        return new UserSorter(keyExtractor, reversed, NullOrder.LAST);
+    }
+
+    /**
+     * @param users
+     * @return new sorted list, {@code users} are not modified.
+     */
+    public List<User> sort(Collection<? extends User> users) {
+        User[] array = users.toArray(new User[0]);
+        int[] order = permutation(array);
+        List<User> result = new ArrayList<>(array.length);
+        for (int index : order) {
+            result.add(array[index]);
+        }
+        return result;
+    }
+
+    /**
+     * Sorts list in place, the same way as {@link List#sort}: via array copy and {@link ListIterator#set}.
+     * @param users
+     */
+    public void sortInPlace(List<User> users) {
+        User[] array = users.toArray(new User[0]);
+        int[] order = permutation(array);
+        ListIterator<User> iterator = users.listIterator();
+        for (int index : order) {
+            iterator.next();
+            iterator.set(array[index]);
+        }
+    }
+
+    /**
+     * @param users
+     * @return indexes of {@code users} in sorted order, e.g. to reorder parallel arrays the same way.
+     */
+    public int[] permutation(List<? extends User> users) {
+        return permutation(users.toArray(new User[0]));
+    }
+
+    /**
+     * Streaming selection of the first {@code k} users in sort order, with a bounded heap: O(n log k) time and O(k)
+     * memory, instead of sorting the whole stream. Works for parallel streams as well.
+     * @param k
+     * @return collector returning at most {@code k} users, sorted.
+     */
+    public Collector<User, ?, List<User>> topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k should not be negative: " + k);
+        }
+        return Collector.of(() -> new TopK(k), TopK::add, TopK::merge, TopK::toList);
+    }
+
+    private int[] permutation(User[] users) {
+        int size = users.length;
+        int[] keys = new int[size];
+        int[] indexes = new int[size];
+        int[] nulls = new int[0];
+        int nonNull = 0;
+        int nullCount = 0;
+        for (int i = 0; i < size; i++) {
+            User user = users[i];
+            if (user == null) {
+                if (nullOrder == NullOrder.FAIL) {
+                    throw new NullPointerException("User at index " + i + " is null");
+                }
+                if (nullCount == nulls.length) {
+                    nulls = Arrays.copyOf(nulls, Math.max(4, nullCount * 2));
+                }
+                nulls[nullCount++] = i;
+            } else {
+                keys[nonNull] = sortKey(user);
+                indexes[nonNull++] = i;
+            }
+        }
+
+        if (nonNull < RADIX_THRESHOLD) {
+            packedSort(keys, indexes, nonNull);
+        } else {
+            radixSort(keys, indexes, nonNull);
+        }
+
+        if (nullCount == 0) {
+            return indexes;
+        }
+        int[] result = new int[size];
+        int nonNullOffset = nullOrder == NullOrder.FIRST ? nullCount : 0;
+        int nullOffset = nullOrder == NullOrder.FIRST ? 0 : nonNull;
+        System.arraycopy(indexes, 0, result, nonNullOffset, nonNull);
+        System.arraycopy(nulls, 0, result, nullOffset, nullCount);
+        return result;
+    }
+
+    /**
+     * @param user
+     * @return key which sorts in required order as unsigned int: sign bit is flipped, and all bits are inverted for
+     * reversed order, so equal keys still sort by index.
+     */
+    private int sortKey(User user) {
+        int key = keyExtractor.applyAsInt(user) ^ Integer.MIN_VALUE;
+        return reversed ? ~key : key;
+    }
+
+    private static void packedSort(int[] keys, int[] indexes, int size) {
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            //packed values are compared as signed, so the sign bit of unsigned key is flipped back
+            packed[i] = ((long) (keys[i] ^ Integer.MIN_VALUE) << 32) | indexes[i];
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < size; i++) {
+            indexes[i] = (int) packed[i];
+        }
+    }
+
+    /**
+     * LSD radix sort of unsigned keys, 8 bits per pass. Every pass is stable, so indexes of equal keys stay ascending.
+     * Passes where all keys have the same digit, e.g. high bytes of small ids, are skipped.
+     */
+    private static void radixSort(int[] keys, int[] indexes, int size) {
+        int[] keyBuffer = new int[size];
+        int[] indexBuffer = new int[size];
+        int[] counts = new int[RADIX];
+        for (int shift = 0; shift < Integer.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (counts[(keys[0] >>> shift) & (RADIX - 1)] == size) {
+                continue;
+            }
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int count = counts[digit];
+                counts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int position = counts[(keys[i] >>> shift) & (RADIX - 1)]++;
+                keyBuffer[position] = keys[i];
+                indexBuffer[position] = indexes[i];
+            }
+            System.arraycopy(keyBuffer, 0, keys, 0, size);
+            System.arraycopy(indexBuffer, 0, indexes, 0, size);
+        }
+    }
+
+    /**
+     * Max-heap of the best {@code k} users seen so far, the worst one is at the root. Users are ranked by sort key,
+     * {@code null} users before or after all keys, then by arrival sequence to keep sort stable.
+     */
+    private final class TopK {
+        private final int k;
+        private long[] ranks;
+        private long[] sequences;
+        private User[] users;
+        private int size;
+        private long seen;
+
+        private TopK(int k) {
+            this.k = k;
+            //k may be large for short streams, so arrays grow on demand
+            int capacity = Math.min(k, 128);
+            this.ranks = new long[capacity];
+            this.sequences = new long[capacity];
+            this.users = new User[capacity];
+        }
+
+        private void add(User user) {
+            offer(rank(user), seen++, user);
+        }
+
+        private TopK merge(TopK right) {
+            //right part of the stream goes after everything seen by the left one
+            for (int i = 0; i < right.size; i++) {
+                offer(right.ranks[i], seen + right.sequences[i], right.users[i]);
+            }
+            seen += right.seen;
+            return this;
+        }
+
+        /**
+         * Heap sort: the worst user is taken from the root and placed at the end. Heap is not usable afterwards.
+         */
+        private List<User> toList() {
+            User[] result = new User[size];
+            while (size > 0) {
+                result[size - 1] = users[0];
+                swap(0, --size);
+                siftDown(0);
+            }
+            return Collections.unmodifiableList(Arrays.asList(result));
+        }
+
+        private long rank(User user) {
+            if (user != null) {
+                return sortKey(user) & 0xFFFFFFFFL;
+            }
+            switch (nullOrder) {
+                case FIRST:
+                    return -1L;
+                case LAST:
+                    return 1L << 32;
+                default:
+                    throw new NullPointerException("User is null");
+            }
+        }
+
+        private void offer(long rank, long sequence, User user) {
+            if (size < k) {
+                if (size == ranks.length) {
+                    int capacity = (int) Math.min(k, size * 2L);
+                    ranks = Arrays.copyOf(ranks, capacity);
+                    sequences = Arrays.copyOf(sequences, capacity);
+                    users = Arrays.copyOf(users, capacity);
+                }
+                ranks[size] = rank;
+                sequences[size] = sequence;
+                users[size] = user;
+                siftUp(size++);
+            } else if (k > 0 && isBefore(rank, sequence, ranks[0], sequences[0])) {
+                ranks[0] = rank;
+                sequences[0] = sequence;
+                users[0] = user;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (compare(parent, index) >= 0) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int largest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && compare(left, largest) > 0) {
+                    largest = left;
+                }
+                if (right < size && compare(right, largest) > 0) {
+                    largest = right;
+                }
+                if (largest == index) {
+                    return;
+                }
+                swap(index, largest);
+                index = largest;
+            }
+        }
+
+        private int compare(int a, int b) {
+            int result = Long.compare(ranks[a], ranks[b]);
+            return result != 0 ? result : Long.compare(sequences[a], sequences[b]);
+        }
+
+        private boolean isBefore(long rank, long sequence, long otherRank, long otherSequence) {
+            return rank < otherRank || rank == otherRank && sequence < otherSequence;
+        }
+
+        private void swap(int a, int b) {
+            long rank = ranks[a];
+            ranks[a] = ranks[b];
+            ranks[b] = rank;
+            long sequence = sequences[a];
+            sequences[a] = sequences[b];
+            sequences[b] = sequence;
+            User user = users[a];
+            users[a] = users[b];
+            users[b] = user;
+        }
+    }
+}
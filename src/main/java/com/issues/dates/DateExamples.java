@@ -18,16 +18,32 @@ import java.util.Date;
  */
 public class DateExamples {
 
+    private final DateService dateService;
+
+    public DateExamples() {
+        this(DateService.systemDefault());
+    }
+
+    /**
+     * Please, do not call {@link LocalDate#now()} in business logic: it makes code hard to test and, in case of hot
+     * paths, reads clock and resolves time zone on every call. Inject {@link java.time.Clock} or {@link DateService}.
+     * @param dateService
+     */
+    public DateExamples(DateService dateService) {
+        this.dateService = dateService;
+    }
+
     /**
-     * Recommended usage of {@link LocalDate#plusDays(long)} and {@link LocalDate#minusDays(long)} methods.
+     * Recommended usage of {@link LocalDate#plusDays(long)} and {@link LocalDate#minusDays(long)} methods, see
+     * {@link DateService}: values are calculated once per day.
      * @return
      */
     public LocalDate tomorrow() {
-        return LocalDate.now().plusDays(1);
+        return dateService.tomorrow();
     }
 
     public LocalDate yesterday() {
-        return LocalDate.now().minusDays(1);
+        return dateService.yesterday();
     }
 
     /**
@@ -35,20 +51,21 @@ public class DateExamples {
      * @return
      */
     public LocalDateTime startOfTheDay() {
-        return tomorrow().atStartOfDay();
+        return dateService.startOfTomorrow();
     }
 
     /**
-     * {@code LocalDate} to old {@code Date} conversion.
+     * {@code LocalDate} to old {@code Date} conversion:
+     * {@code Date.from(localDate.atStartOfDay(ZoneId.systemDefault()).toInstant())}.
      * @return
      */
     public Date toDate() {
-        LocalDate localDate = LocalDate.now();
-        return Date.from(localDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        return dateService.startOfTodayDate();
     }
 
     /**
-     * Old {@code Date} to {@code LocalDate} conversion.
+     * Old {@code Date} to {@code LocalDate} conversion. For bulk conversions, please, use {@link EpochDayConverter} on
+     * {@code long[]} of {@link Date#getTime()} values.
      * @return
      */
     public LocalDate toLocalDate() {
@@ -0,0 +1,165 @@
+package com.issues.dates;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LocalDate#now()} reads system clock and resolves {@link ZoneId#systemDefault()} on every call, and every derived
+ * value ({@code plusDays}, {@code atStartOfDay}, {@link Date}) is a new object. However, "today" changes only once a day.
+ *
+ * This service computes today, tomorrow, yesterday and start of day values once per day and zone, and keeps them in an
+ * immutable snapshot behind a volatile field, so reads are lock free and do not allocate. Snapshot is replaced at
+ * midnight:
+ * 1) without scheduler, every read compares {@link Clock#millis()} with the next midnight;
+ * 2) with scheduler, snapshot is replaced by a task scheduled at the next midnight, and reads do not touch the clock.
+ *
+ * {@link Clock} is injectable, so tests could use {@link Clock#fixed} or their own clock.
+ */
+public class DateService {
+
+    private static final DateService SYSTEM_DEFAULT = new DateService(Clock.systemDefaultZone());
+
+    private final Clock clock;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentHashMap<ZoneId, ZoneDay> zones = new ConcurrentHashMap<>();
+
+    private final ZoneDay defaultZone;
+
+    public DateService(Clock clock) {
+        this(clock, null);
+    }
+
+    /**
+     * @param clock
+     * @param scheduler used for midnight rollover, {@code null} to check the clock on every read instead.
+     */
+    public DateService(Clock clock, ScheduledExecutorService scheduler) {
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.defaultZone = zone(clock.getZone());
+    }
+
+    /**
+     * Shared instance for {@link Clock#systemDefaultZone()}. Please, note that default zone is resolved only once.
+     * @return
+     */
+    public static DateService systemDefault() {
+        return SYSTEM_DEFAULT;
+    }
+
+    public LocalDate today() {
+        return defaultZone.current().today;
+    }
+
+    public LocalDate today(ZoneId zone) {
+        return zone(zone).current().today;
+    }
+
+    public LocalDate tomorrow() {
+        return defaultZone.current().tomorrow;
+    }
+
+    public LocalDate yesterday() {
+        return defaultZone.current().yesterday;
+    }
+
+    public LocalDateTime startOfToday() {
+        return defaultZone.current().startOfToday;
+    }
+
+    public LocalDateTime startOfTomorrow() {
+        return defaultZone.current().startOfTomorrow;
+    }
+
+    public long startOfTodayEpochMilli() {
+        return defaultZone.current().startOfTodayEpochMilli;
+    }
+
+    public long startOfTodayEpochMilli(ZoneId zone) {
+        return zone(zone).current().startOfTodayEpochMilli;
+    }
+
+    /**
+     * {@link Date} is mutable, so a new instance is returned every time, however, no time zone math is involved.
+     * @return
+     */
+    public Date startOfTodayDate() {
+        return new Date(startOfTodayEpochMilli());
+    }
+
+    public Date startOfTodayDate(ZoneId zone) {
+        return new Date(startOfTodayEpochMilli(zone));
+    }
+
+    private ZoneDay zone(ZoneId zone) {
+        ZoneDay day = zones.get(zone);
+        return day != null ? day : zones.computeIfAbsent(zone, ZoneDay::new);
+    }
+
+    /**
+     * Immutable snapshot of a single day in a single zone.
+     */
+    private static final class Day {
+        private final LocalDate today;
+        private final LocalDate tomorrow;
+        private final LocalDate yesterday;
+        private final LocalDateTime startOfToday;
+        private final LocalDateTime startOfTomorrow;
+        private final long startOfTodayEpochMilli;
+        private final long startOfTomorrowEpochMilli;
+
+        private Day(LocalDate today, ZoneId zone) {
+            this.today = today;
+            this.tomorrow = today.plusDays(1);
+            this.yesterday = today.minusDays(1);
+            this.startOfToday = today.atStartOfDay();
+            this.startOfTomorrow = tomorrow.atStartOfDay();
+            //atStartOfDay(zone) handles DST gaps, when day does not start at 00:00
+            this.startOfTodayEpochMilli = today.atStartOfDay(zone).toInstant().toEpochMilli();
+            this.startOfTomorrowEpochMilli = tomorrow.atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    private final class ZoneDay {
+
+        private final ZoneId zone;
+
+        private volatile Day day;
+
+        private ZoneDay(ZoneId zone) {
+            this.zone = zone;
+            this.day = new Day(LocalDate.now(clock.withZone(zone)), zone);
+            scheduleRollover();
+        }
+
+        private Day current() {
+            Day current = day;
+            if (scheduler == null && clock.millis() >= current.startOfTomorrowEpochMilli) {
+                //benign race: concurrent readers may compute the same snapshot twice
+                current = new Day(LocalDate.now(clock.withZone(zone)), zone);
+                day = current;
+            }
+            return current;
+        }
+
+        private void rollover() {
+            day = new Day(LocalDate.now(clock.withZone(zone)), zone);
+            scheduleRollover();
+        }
+
+        private void scheduleRollover() {
+            if (scheduler != null) {
+                long delay = Math.max(1, day.startOfTomorrowEpochMilli - clock.millis());
+                scheduler.schedule(this::rollover, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.issues.dates;
+
+import com.issues.lambda.AdaptiveExecution;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Bulk conversion between epoch millis and epoch days (the same as {@link LocalDate#toEpochDay()}) in a given zone.
+ *
+ * {@code date.toInstant().atZone(zone).toLocalDate()} allocates several objects and looks up zone rules for every
+ * value. However, zone offset changes only at transitions (a couple of times a year at most), so between transitions
+ * conversion is plain arithmetic. Converter remembers the offset and bounds of the last seen stretch between
+ * transitions and goes to {@link ZoneRules} only when a value falls outside of it, which is rare for real data sets.
+ *
+ * Instances are thread safe, stretch cache is local to every conversion call.
+ */
+public class EpochDayConverter {
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final ZoneId zone;
+
+    private final ZoneRules rules;
+
+    private final AdaptiveExecution execution;
+
+    public EpochDayConverter(ZoneId zone) {
+        this(zone, AdaptiveExecution.defaultInstance());
+    }
+
+    /**
+     * @param zone
+     * @param execution decides whether large arrays are converted in parallel.
+     */
+    public EpochDayConverter(ZoneId zone, AdaptiveExecution execution) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.execution = execution;
+    }
+
+    /**
+     * @param epochMillis
+     * @return epoch days of local dates in the zone.
+     */
+    public int[] toEpochDays(long[] epochMillis) {
+        int[] result = new int[epochMillis.length];
+        execution.forEachChunk(epochMillis.length, (from, to) -> toEpochDays(epochMillis, result, from, to));
+        return result;
+    }
+
+    public LocalDate[] toLocalDates(long[] epochMillis) {
+        int[] epochDays = toEpochDays(epochMillis);
+        LocalDate[] result = new LocalDate[epochDays.length];
+        execution.forEachChunk(epochDays.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = LocalDate.ofEpochDay(epochDays[i]);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param epochDays
+     * @return epoch millis of start of every day in the zone, the same as
+     * {@code LocalDate.ofEpochDay(day).atStartOfDay(zone).toInstant().toEpochMilli()}.
+     */
+    public long[] toStartOfDayEpochMillis(int[] epochDays) {
+        long[] result = new long[epochDays.length];
+        execution.forEachChunk(epochDays.length, (from, to) -> toStartOfDayEpochMillis(epochDays, result, from, to));
+        return result;
+    }
+
+    public long[] toStartOfDayEpochMillis(LocalDate[] dates) {
+        int[] epochDays = new int[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            epochDays[i] = Math.toIntExact(dates[i].toEpochDay());
+        }
+        return toStartOfDayEpochMillis(epochDays);
+    }
+
+    private void toEpochDays(long[] epochMillis, int[] result, int from, int to) {
+        Stretch stretch = new Stretch();
+        for (int i = from; i < to; i++) {
+            long millis = epochMillis[i];
+            if (!stretch.contains(millis)) {
+                stretch.moveTo(millis);
+            }
+            result[i] = (int) Math.floorDiv(millis + stretch.offsetMillis, MILLIS_PER_DAY);
+        }
+    }
+
+    private void toStartOfDayEpochMillis(int[] epochDays, long[] result, int from, int to) {
+        Stretch stretch = new Stretch();
+        for (int i = from; i < to; i++) {
+            long localMidnight = epochDays[i] * MILLIS_PER_DAY;
+            long candidate = localMidnight - stretch.offsetMillis;
+            if (!stretch.containsWithMargin(candidate)) {
+                stretch.moveTo(candidate);
+                candidate = localMidnight - stretch.offsetMillis;
+            }
+            //close to transitions local midnight may not exist or be ambiguous, let java.time resolve it
+            result[i] = stretch.containsWithMargin(candidate)
+                    ? candidate
+                    : LocalDate.ofEpochDay(epochDays[i]).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    /**
+     * Range of instants {@code [start, end)} with the same offset.
+     */
+    private final class Stretch {
+        private long start = Long.MAX_VALUE;
+        private long end = Long.MIN_VALUE;
+        private long offsetMillis;
+
+        private boolean contains(long millis) {
+            return millis >= start && millis < end;
+        }
+
+        /**
+         * Local midnight is unambiguous if it is at least one day away from both transitions.
+         */
+        private boolean containsWithMargin(long millis) {
+            return millis - MILLIS_PER_DAY >= start && millis + MILLIS_PER_DAY < end;
+        }
+
+        private void moveTo(long millis) {
+            Instant instant = Instant.ofEpochMilli(millis);
+            offsetMillis = rules.getOffset(instant).getTotalSeconds() * 1000L;
+            if (rules.isFixedOffset()) {
+                start = Long.MIN_VALUE;
+                end = Long.MAX_VALUE;
+                return;
+            }
+            //transition instant belongs to the new offset
+            ZoneOffsetTransition previous = rules.previousTransition(instant.plusMillis(1));
+            ZoneOffsetTransition next = rules.nextTransition(instant);
+            start = previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000L;
+            end = next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000L;
+        }
+    }
+}
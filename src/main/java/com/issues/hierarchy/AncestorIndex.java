@@ -0,0 +1,235 @@
+package com.issues.hierarchy;
+
+import com.issues.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Snapshot of the {@link User#getParent()} hierarchy for ancestor queries. Walking {@link Optional} parents one hop at a
+ * time is fine for {@link com.issues.optional.OptionalAPI#getGrandParentId(User)}, however, for deep hierarchies every
+ * query becomes O(depth).
+ *
+ * Index uses binary lifting: for every user we keep ancestors at 1, 2, 4, ... generations up, so ancestor at any
+ * distance, lowest common ancestor and "is ancestor" checks take O(log depth).
+ *
+ * Index is not updated on {@link User#setParent(Optional)}, please, rebuild it after hierarchy changes. For queries in
+ * the opposite direction, e.g. all descendants with some permission, see {@link SubtreeIndex}.
+ */
+public final class AncestorIndex {
+
+    private static final int NO_PARENT = -1;
+
+    private final Map<User, Integer> ordinals;
+
+    private final User[] users;
+
+    private final int[] depths;
+
+    /**
+     * {@code jumps[k][i]} is the ordinal of ancestor {@code 2^k} generations above user {@code i}.
+     */
+    private final int[][] jumps;
+
+    private AncestorIndex(Map<User, Integer> ordinals, User[] users, int[] parents) {
+        this.ordinals = ordinals;
+        this.users = users;
+        this.depths = computeDepths(parents);
+
+        int maxDepth = 0;
+        for (int depth : depths) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        int levels = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxDepth));
+        this.jumps = new int[levels][];
+        this.jumps[0] = parents;
+        for (int k = 1; k < levels; k++) {
+            int[] previous = jumps[k - 1];
+            int[] current = new int[users.length];
+            for (int i = 0; i < users.length; i++) {
+                current[i] = previous[i] == NO_PARENT ? NO_PARENT : previous[previous[i]];
+            }
+            jumps[k] = current;
+        }
+    }
+
+    /**
+     * Builds index for given users and all their ancestors.
+     * @param users
+     * @return
+     * @throws IllegalArgumentException if parent chain contains a cycle.
+     */
+    public static AncestorIndex of(Collection<User> users) {
+        Map<User, Integer> ordinals = new IdentityHashMap<>();
+        List<User> byOrdinal = new ArrayList<>();
+        Set<User> path = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (User user : users) {
+            path.clear();
+            for (User current = user; current != null && !ordinals.containsKey(current); current = parentOf(current)) {
+                if (!path.add(current)) {
+                    throw new IllegalArgumentException("Cycle in parent chain of user with id=" + user.getId());
+                }
+            }
+            for (User current = user; current != null && !ordinals.containsKey(current); current = parentOf(current)) {
+                ordinals.put(current, byOrdinal.size());
+                byOrdinal.add(current);
+            }
+        }
+
+        int[] parents = new int[byOrdinal.size()];
+        for (int i = 0; i < parents.length; i++) {
+            User parent = parentOf(byOrdinal.get(i));
+            parents[i] = parent == null ? NO_PARENT : ordinals.get(parent);
+        }
+        return new AncestorIndex(ordinals, byOrdinal.toArray(new User[0]), parents);
+    }
+
+    public int size() {
+        return users.length;
+    }
+
+    /**
+     * Amount of generations between user and the root of its hierarchy, root has depth 0.
+     * @param user
+     * @return
+     */
+    public int getDepth(User user) {
+        return depths[ordinalOf(user)];
+    }
+
+    /**
+     * Ancestor {@code generations} levels up: 0 is the user itself, 1 is parent, 2 is grandparent and so on.
+     * @param user
+     * @param generations
+     * @return
+     */
+    public Optional<User> getAncestor(User user, int generations) {
+        if (user == null) {
+            return Optional.empty();
+        }
+        int ordinal = ancestorOrdinal(ordinalOf(user), generations);
+        return ordinal == NO_PARENT ? Optional.empty() : Optional.of(users[ordinal]);
+    }
+
+    /**
+     * The same as {@link #getAncestor(User, int)}, but for a batch of users.
+     * @param users
+     * @param generations
+     * @return ancestors in the same order as {@code users}, {@code null} when there is no such ancestor.
+     */
+    public List<User> getAncestors(List<User> users, int generations) {
+        List<User> result = new ArrayList<>(users.size());
+        for (User user : users) {
+            result.add(getAncestor(user, generations).orElse(null));
+        }
+        return result;
+    }
+
+    /**
+     * @param ancestor
+     * @param descendant
+     * @return true if {@code ancestor} is a parent, grandparent and so on of {@code descendant}. User is not an ancestor
+     * of itself.
+     */
+    public boolean isAncestor(User ancestor, User descendant) {
+        int ancestorOrdinal = ordinalOf(ancestor);
+        int descendantOrdinal = ordinalOf(descendant);
+        int distance = depths[descendantOrdinal] - depths[ancestorOrdinal];
+        return distance > 0 && ancestorOrdinal(descendantOrdinal, distance) == ancestorOrdinal;
+    }
+
+    /**
+     * Batch version of {@link #isAncestor(User, User)}.
+     * @param ancestor
+     * @param descendants
+     * @return
+     */
+    public boolean[] isAncestorOfEach(User ancestor, List<User> descendants) {
+        boolean[] result = new boolean[descendants.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = isAncestor(ancestor, descendants.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Lowest common ancestor of two users. If one user is an ancestor of another, it is the answer.
+     * @param first
+     * @param second
+     * @return empty if users belong to different hierarchies.
+     */
+    public Optional<User> lowestCommonAncestor(User first, User second) {
+        int a = ordinalOf(first);
+        int b = ordinalOf(second);
+        if (depths[a] < depths[b]) {
+            b = ancestorOrdinal(b, depths[b] - depths[a]);
+        } else {
+            a = ancestorOrdinal(a, depths[a] - depths[b]);
+        }
+        if (a == b) {
+            return Optional.of(users[a]);
+        }
+        for (int k = jumps.length - 1; k >= 0; k--) {
+            if (jumps[k][a] != jumps[k][b]) {
+                a = jumps[k][a];
+                b = jumps[k][b];
+            }
+        }
+        int lca = jumps[0][a];
+        return lca == NO_PARENT ? Optional.empty() : Optional.of(users[lca]);
+    }
+
+    private int ancestorOrdinal(int ordinal, int generations) {
+        if (generations < 0) {
+            throw new IllegalArgumentException("generations should not be negative: " + generations);
+        }
+        if (generations > depths[ordinal]) {
+            return NO_PARENT;
+        }
+        for (int k = 0; generations != 0; k++, generations >>>= 1) {
+            if ((generations & 1) != 0) {
+                ordinal = jumps[k][ordinal];
+            }
+        }
+        return ordinal;
+    }
+
+    private int ordinalOf(User user) {
+        Integer ordinal = ordinals.get(user);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("User " + (user == null ? null : user.getId()) + " is not indexed.");
+        }
+        return ordinal;
+    }
+
+    private static User parentOf(User user) {
+        return user.getParent() == null ? null : user.getParent().orElse(null);
+    }
+
+    private static int[] computeDepths(int[] parents) {
+        int[] depths = new int[parents.length];
+        boolean[] known = new boolean[parents.length];
+        int[] stack = new int[parents.length];
+        for (int i = 0; i < parents.length; i++) {
+            int size = 0;
+            int current = i;
+            while (current != NO_PARENT && !known[current]) {
+                stack[size++] = current;
+                current = parents[current];
+            }
+            int depth = current == NO_PARENT ? -1 : depths[current];
+            while (size > 0) {
+                int ordinal = stack[--size];
+                depths[ordinal] = ++depth;
+                known[ordinal] = true;
+            }
+        }
+        return depths;
+    }
+}
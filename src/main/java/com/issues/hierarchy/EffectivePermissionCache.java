@@ -0,0 +1,360 @@
+package com.issues.hierarchy;
+
+import com.issues.PermissionSet;
+import com.issues.Permissions;
+import com.issues.User;
+import com.issues.UserChange;
+import com.issues.UserChangeListener;
+import com.issues.UserChangeTracker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Effective permissions of a user are its own permissions plus permissions of all its ancestors. Walking
+ * {@link User#getParent()} on every check is O(depth), so the cache keeps one precomputed bitmask (see
+ * {@link PermissionSet}) per user and a reverse parent to children index.
+ *
+ * Users are registered on first lookup, together with their ancestors. When permissions or parent of a registered user
+ * change, only masks of that user and its registered descendants are recomputed. Please, change users via
+ * {@link #setPermissions(User, List)} and {@link #setParent(User, User)}, or call {@link #invalidate(User)} after
+ * changing them directly.
+ *
+ * Writers are serialized by a {@link StampedLock}. Readers do not block: they use optimistic reads and retry under read
+ * lock only if a writer was active, so a reader never sees a subtree partially recomputed, only the whole state before
+ * or after an update.
+ *
+ * Users are compared by identity, as {@link User#hashCode()} depends on mutable fields.
+ */
+public final class EffectivePermissionCache {
+
+    private final ConcurrentHashMap<IdentityKey, Node> nodes = new ConcurrentHashMap<>();
+
+    private final StampedLock lock = new StampedLock();
+
+    public EffectivePermissionCache() {
+    }
+
+    public EffectivePermissionCache(Collection<User> users) {
+        long stamp = lock.writeLock();
+        try {
+            for (User user : users) {
+                register(user);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param user
+     * @return bitmask of own and inherited permissions, see {@link PermissionSet#mask()}.
+     */
+    public long getEffectiveMask(User user) {
+        Node node = nodes.get(new IdentityKey(user));
+        if (node == null) {
+            node = registerLocked(user);
+        }
+        long stamp = lock.tryOptimisticRead();
+        long mask = node.effectiveMask;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                mask = node.effectiveMask;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return mask;
+    }
+
+    public PermissionSet getEffectivePermissions(User user) {
+        return PermissionSet.fromMask(getEffectiveMask(user));
+    }
+
+    public boolean hasEffectivePermission(User user, Permissions permission) {
+        return (getEffectiveMask(user) & PermissionSet.bit(permission)) != 0L;
+    }
+
+    /**
+     * Calls {@link User#setPermissions(List)} and recomputes the user subtree, atomically for readers of the cache.
+     * @param user
+     * @param permissions
+     */
+    public void setPermissions(User user, List<Permissions> permissions) {
+        long stamp = lock.writeLock();
+        try {
+            Node node = register(user);
+            user.setPermissions(permissions);
+            node.ownMask = ownMask(user);
+            recomputeSubtree(node);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Calls {@link User#setParent(Optional)} and recomputes the user subtree, atomically for readers of the cache.
+     * @param user
+     * @param parent {@code null} to make user a root.
+     * @throws IllegalArgumentException if {@code parent} is a descendant of {@code user}.
+     */
+    public void setParent(User user, User parent) {
+        long stamp = lock.writeLock();
+        try {
+            Node node = register(user);
+            Node parentNode = parent == null ? null : register(parent);
+            if (isAncestorOrSelf(node, parentNode)) {
+                throw new IllegalArgumentException("User with id=" + parent.getId()
+                        + " is a descendant of user with id=" + user.getId() + ", parent would create a cycle.");
+            }
+            user.setParent(Optional.ofNullable(parent));
+            link(node, parentNode);
+            recomputeSubtree(node);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Re-reads permissions and parent of the user, e.g. after it was modified directly, and recomputes its subtree.
+     * Unknown users are just registered.
+     * @param user
+     */
+    public void invalidate(User user) {
+        invalidateAll(Collections.singletonList(user));
+    }
+
+    /**
+     * Batch version of {@link #invalidate(User)}: all the users are re-read under a single write lock, so readers see
+     * either none or all of the changes, and every changed subtree is recomputed once, even if it contains several
+     * changed users.
+     * @param users
+     * @throws IllegalArgumentException if new parent of some user would create a cycle. Such users keep the previous
+     * parent, all the other users are still applied.
+     */
+    public void invalidateAll(Collection<User> users) {
+        List<User> pendingUsers = new ArrayList<>(users);
+        List<User> failed = new ArrayList<>(0);
+        long stamp = lock.writeLock();
+        try {
+            Set<Node> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+            //users moved under their former descendants look like cycles until those descendants are moved as well,
+            //so such users are retried while there is progress
+            int remaining;
+            do {
+                remaining = pendingUsers.size();
+                List<User> retry = new ArrayList<>(0);
+                for (User user : pendingUsers) {
+                    try {
+                        if (!relink(user, changed)) {
+                            retry.add(user);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        //cycle in parent chain which is not registered yet
+                        failed.add(user);
+                    }
+                }
+                pendingUsers = retry;
+            } while (!pendingUsers.isEmpty() && pendingUsers.size() < remaining);
+            failed.addAll(pendingUsers);
+            for (Node node : changed) {
+                if (!hasChangedAncestor(node, changed)) {
+                    recomputeSubtree(node);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (!failed.isEmpty()) {
+            throw new IllegalArgumentException("Cycle in parent chain of user with id=" + failed.get(0).getId());
+        }
+    }
+
+    /**
+     * @return listener which recomputes masks of changed users, for users modified directly and tracked by
+     * {@link UserChangeTracker}. The whole batch is applied by a single {@link #invalidateAll(Collection)}. Users which
+     * are not registered yet are ignored, they are registered on first lookup.
+     */
+    public UserChangeListener asChangeListener() {
+        return changes -> {
+            Set<User> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (UserChange change : changes) {
+                if (change.getField() != UserChange.Field.ID && nodes.containsKey(new IdentityKey(change.getUser()))) {
+                    changed.add(change.getUser());
+                }
+            }
+            if (!changed.isEmpty()) {
+                invalidateAll(changed);
+            }
+        };
+    }
+
+    /**
+     * @return amount of registered users.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    private Node registerLocked(User user) {
+        long stamp = lock.writeLock();
+        try {
+            return register(user);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Registers user and its unregistered ancestors, top down, so every parent mask is known before its children.
+     * Should be called under write lock.
+     */
+    private Node register(User user) {
+        Node node = nodes.get(new IdentityKey(user));
+        if (node != null) {
+            return node;
+        }
+        List<User> chain = new ArrayList<>();
+        Set<User> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (User current = user; current != null && !nodes.containsKey(new IdentityKey(current));
+             current = parentOf(current)) {
+            if (!seen.add(current)) {
+                throw new IllegalArgumentException("Cycle in parent chain of user with id=" + user.getId());
+            }
+            chain.add(current);
+        }
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            User current = chain.get(i);
+            User parent = parentOf(current);
+            Node created = new Node(ownMask(current));
+            link(created, parent == null ? null : nodes.get(new IdentityKey(parent)));
+            created.effectiveMask = created.parent == null
+                    ? created.ownMask
+                    : created.ownMask | created.parent.effectiveMask;
+            nodes.put(new IdentityKey(current), created);
+        }
+        return nodes.get(new IdentityKey(user));
+    }
+
+    /**
+     * Re-reads own permissions and parent of the user, unknown users are just registered. Should be called under write
+     * lock, subtree is not recomputed.
+     * @return {@code false} if new parent is a descendant of the user, nothing is changed in that case.
+     */
+    private boolean relink(User user, Set<Node> changed) {
+        Node node = nodes.get(new IdentityKey(user));
+        if (node == null) {
+            register(user);
+            return true;
+        }
+        User parent = parentOf(user);
+        Node parentNode = parent == null ? null : register(parent);
+        if (isAncestorOrSelf(node, parentNode)) {
+            return false;
+        }
+        node.ownMask = ownMask(user);
+        link(node, parentNode);
+        changed.add(node);
+        return true;
+    }
+
+    private static boolean isAncestorOrSelf(Node node, Node candidate) {
+        for (Node ancestor = candidate; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Subtree of such node is recomputed as a part of the ancestor subtree.
+     */
+    private static boolean hasChangedAncestor(Node node, Set<Node> changed) {
+        for (Node ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+            if (changed.contains(ancestor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void link(Node node, Node parent) {
+        if (node.parent == parent) {
+            return;
+        }
+        if (node.parent != null) {
+            node.parent.children.remove(node);
+        }
+        node.parent = parent;
+        if (parent != null) {
+            parent.children.add(node);
+        }
+    }
+
+    /**
+     * Iterative, as hierarchy could be deeper than the stack allows.
+     */
+    private static void recomputeSubtree(Node root) {
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            node.effectiveMask = node.parent == null ? node.ownMask : node.ownMask | node.parent.effectiveMask;
+            for (Node child : node.children) {
+                pending.push(child);
+            }
+        }
+    }
+
+    private static long ownMask(User user) {
+        return user.getPermissionSet().mask();
+    }
+
+    private static User parentOf(User user) {
+        Optional<User> parent = user.getParent();
+        return parent == null ? null : parent.orElse(null);
+    }
+
+    /**
+     * Guarded by the write lock, except {@link #effectiveMask} which is read optimistically.
+     */
+    private static final class Node {
+        private final List<Node> children = new ArrayList<>(0);
+        private long ownMask;
+        private long effectiveMask;
+        private Node parent;
+
+        private Node(long ownMask) {
+            this.ownMask = ownMask;
+        }
+    }
+
+    private static final class IdentityKey {
+        private final User user;
+
+        private IdentityKey(User user) {
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityKey && ((IdentityKey) o).user == user;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(user);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.issues.hierarchy;
+
+import com.issues.PermissionSet;
+import com.issues.Permissions;
+import com.issues.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Descendant queries over the {@link User#getParent()} hierarchy, e.g. "all admins under this manager", without
+ * building child lists and walking them on every query.
+ *
+ * Users are laid out in pre-order with a start and an end marker each, so every subtree is a contiguous range of
+ * positions between the markers of its root. Descendant check is two comparisons, and subtree queries are range scans
+ * of per-permission {@link BitSet}s, the same bitsets as in {@link com.issues.collections.UserPermissionIndex}, but
+ * indexed by position.
+ *
+ * Markers are kept in a packed memory array: positions are split into segments of about log(capacity) positions, and
+ * a new leaf is put right before the end marker of its parent by spreading the smallest aligned window around it
+ * which stays under its density limit. The limit is 1 for a single segment and gets stricter for bigger windows, down
+ * to 1/2 for the whole array, which is doubled when it is more than half full. So insertion moves O(log^2 n)
+ * markers amortized, whatever the shape of the tree, and {@link #of(Collection)} lays out all users at once.
+ *
+ * Subtree sizes are not stored, as a new leaf would have to update all its ancestors, so
+ * {@link #getSubtreeSize(User)} scans the subtree like other queries.
+ *
+ * Permissions are taken on {@link #add(User)}, please, call {@link #updatePermissions(User)} after they change.
+ * Parents are not expected to change, please, rebuild index in such case. Not thread safe.
+ */
+public final class SubtreeIndex {
+
+    /**
+     * Ordinal of the virtual root of all hierarchies, its markers are around all other ones.
+     */
+    private static final int ROOT = 0;
+
+    private static final int EMPTY = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Density limit of the whole array, limits of smaller windows go linearly from it up to 1 for a single segment.
+     */
+    private static final double ROOT_DENSITY = 0.5;
+
+    private static final Permissions[] PERMISSIONS = Permissions.values();
+
+    private final Map<User, Integer> ordinals = new IdentityHashMap<>();
+
+    private final Map<Permissions, BitSet> positionsByPermission = new EnumMap<>(Permissions.class);
+
+    private final BitSet startPositions = new BitSet();
+
+    private int size;
+
+    //by ordinal
+    private User[] users = new User[MIN_CAPACITY];
+    private long[] masks = new long[MIN_CAPACITY];
+    private int[] starts = new int[MIN_CAPACITY];
+    private int[] ends = new int[MIN_CAPACITY];
+
+    //by position, start marker of ordinal is 2 * ordinal and end marker is 2 * ordinal + 1
+    private int[] markers = new int[0];
+
+    //by segment
+    private int[] segmentCounts = new int[0];
+    private int segmentShift;
+
+    public SubtreeIndex() {
+        for (Permissions permission : PERMISSIONS) {
+            positionsByPermission.put(permission, new BitSet());
+        }
+        size = 1;
+        rebuild(new int[]{startMarker(ROOT), endMarker(ROOT)});
+    }
+
+    /**
+     * Builds index for given users and all their ancestors with a single layout.
+     * @param users
+     * @return
+     * @throws IllegalArgumentException if parent chain contains a cycle.
+     */
+    public static SubtreeIndex of(Collection<User> users) {
+        SubtreeIndex index = new SubtreeIndex();
+        int[] parents = new int[MIN_CAPACITY];
+        for (User user : users) {
+            List<User> chain = index.unindexedChain(user);
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                User current = chain.get(i);
+                int parent = index.parentOrdinalOf(current);
+                int ordinal = index.newNode(current);
+                if (ordinal == parents.length) {
+                    parents = Arrays.copyOf(parents, ordinal + (ordinal >> 1));
+                }
+                parents[ordinal] = parent;
+            }
+        }
+        index.rebuild(index.preOrder(parents));
+        return index;
+    }
+
+    /**
+     * Adds a new leaf, and its ancestors which are not in the index yet. Already indexed users are ignored.
+     * @param user
+     * @throws IllegalArgumentException if parent chain contains a cycle.
+     */
+    public void add(User user) {
+        List<User> chain = unindexedChain(user);
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            User current = chain.get(i);
+            int parent = parentOrdinalOf(current);
+            int ordinal = newNode(current);
+            insertBefore(ends[parent], startMarker(ordinal), endMarker(ordinal));
+        }
+    }
+
+    /**
+     * Re-reads {@link User#getPermissionSet()} of already indexed user.
+     * @param user
+     */
+    public void updatePermissions(User user) {
+        int ordinal = ordinalOf(user);
+        setPermissionBits(starts[ordinal], masks[ordinal], false);
+        masks[ordinal] = user.getPermissionSet().mask();
+        setPermissionBits(starts[ordinal], masks[ordinal], true);
+    }
+
+    public int size() {
+        return size - 1;
+    }
+
+    public boolean contains(User user) {
+        return ordinals.containsKey(user);
+    }
+
+    /**
+     * Takes time proportional to the subtree size.
+     * @param user
+     * @return amount of users in subtree, including the user itself.
+     */
+    public int getSubtreeSize(User user) {
+        int ordinal = ordinalOf(user);
+        return 1 + count(startPositions, ordinal);
+    }
+
+    /**
+     * @param ancestor
+     * @param descendant
+     * @return true if {@code ancestor} is a parent, grandparent and so on of {@code descendant}. User is not a
+     * descendant of itself.
+     */
+    public boolean isDescendant(User ancestor, User descendant) {
+        int ancestorOrdinal = ordinalOf(ancestor);
+        int position = starts[ordinalOf(descendant)];
+        return starts[ancestorOrdinal] < position && position < ends[ancestorOrdinal];
+    }
+
+    /**
+     * @param ancestor
+     * @return all descendants in pre-order, without {@code ancestor} itself.
+     */
+    public List<User> getDescendants(User ancestor) {
+        return collect(startPositions, ordinalOf(ancestor));
+    }
+
+    /**
+     * @param ancestor
+     * @param permission
+     * @return descendants having {@code permission}, in pre-order, without {@code ancestor} itself.
+     */
+    public List<User> getDescendantsWith(User ancestor, Permissions permission) {
+        return collect(positionsByPermission.get(permission), ordinalOf(ancestor));
+    }
+
+    /**
+     * @param ancestor
+     * @param permissions
+     * @return descendants having all the {@code permissions}, in pre-order, without {@code ancestor} itself.
+     */
+    public List<User> getDescendantsWithAll(User ancestor, PermissionSet permissions) {
+        if (permissions.isEmpty()) {
+            return getDescendants(ancestor);
+        }
+        int ordinal = ordinalOf(ancestor);
+        //the first permission narrows positions, the rest are checked against masks
+        BitSet positions = positionsByPermission.get(permissions.toList().get(0));
+        long required = permissions.mask();
+        List<User> result = new ArrayList<>();
+        int to = ends[ordinal];
+        for (int position = positions.nextSetBit(starts[ordinal] + 1); position >= 0 && position < to;
+             position = positions.nextSetBit(position + 1)) {
+            int descendant = markers[position] >>> 1;
+            if ((masks[descendant] & required) == required) {
+                result.add(users[descendant]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param ancestor
+     * @param permission
+     * @return amount of descendants having {@code permission}, without {@code ancestor} itself.
+     */
+    public int countDescendantsWith(User ancestor, Permissions permission) {
+        return count(positionsByPermission.get(permission), ordinalOf(ancestor));
+    }
+
+    private List<User> collect(BitSet positions, int ordinal) {
+        List<User> result = new ArrayList<>();
+        int to = ends[ordinal];
+        for (int position = positions.nextSetBit(starts[ordinal] + 1); position >= 0 && position < to;
+             position = positions.nextSetBit(position + 1)) {
+            result.add(users[markers[position] >>> 1]);
+        }
+        return result;
+    }
+
+    private int count(BitSet positions, int ordinal) {
+        int count = 0;
+        int to = ends[ordinal];
+        for (int position = positions.nextSetBit(starts[ordinal] + 1); position >= 0 && position < to;
+             position = positions.nextSetBit(position + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return user and its ancestors which are not indexed yet, starting from the user.
+     */
+    private List<User> unindexedChain(User user) {
+        List<User> chain = new ArrayList<>();
+        Set<User> path = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (User current = user; current != null && !ordinals.containsKey(current); current = parentOf(current)) {
+            if (!path.add(current)) {
+                throw new IllegalArgumentException("Cycle in parent chain of user with id=" + user.getId());
+            }
+            chain.add(current);
+        }
+        return chain;
+    }
+
+    private int parentOrdinalOf(User user) {
+        User parent = parentOf(user);
+        return parent == null ? ROOT : ordinals.get(parent);
+    }
+
+    /**
+     * Registers user without a position.
+     */
+    private int newNode(User user) {
+        if (size == users.length) {
+            int capacity = size + (size >> 1);
+            users = Arrays.copyOf(users, capacity);
+            masks = Arrays.copyOf(masks, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        users[size] = user;
+        masks[size] = user.getPermissionSet().mask();
+        ordinals.put(user, size);
+        return size++;
+    }
+
+    /**
+     * @param parents parent ordinal of every ordinal but the root.
+     * @return markers of all users in pre-order, siblings in the order they were registered.
+     */
+    private int[] preOrder(int[] parents) {
+        //sibling lists are built by prepending, so they are in reverse order, which the stack reverses again
+        int[] firstChildren = new int[size];
+        int[] nextSiblings = new int[size];
+        Arrays.fill(firstChildren, EMPTY);
+        for (int ordinal = ROOT + 1; ordinal < size; ordinal++) {
+            nextSiblings[ordinal] = firstChildren[parents[ordinal]];
+            firstChildren[parents[ordinal]] = ordinal;
+        }
+        int[] sequence = new int[2 * size];
+        int[] pending = new int[2 * size];
+        int count = 0;
+        int top = 0;
+        pending[top++] = startMarker(ROOT);
+        while (top > 0) {
+            int marker = pending[--top];
+            sequence[count++] = marker;
+            if (isStart(marker)) {
+                int ordinal = marker >>> 1;
+                pending[top++] = endMarker(ordinal);
+                for (int child = firstChildren[ordinal]; child != EMPTY; child = nextSiblings[child]) {
+                    pending[top++] = startMarker(child);
+                }
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Puts two markers right before {@code position}, spreading the lowest window which stays under its density limit
+     * with them, or the whole array with doubled capacity, if there is no such window.
+     */
+    private void insertBefore(int position, int first, int second) {
+        int height = Integer.numberOfTrailingZeros(markers.length) - segmentShift;
+        int length = 1 << segmentShift;
+        int from = position & -length;
+        int count = segmentCounts[position >> segmentShift];
+        for (int level = 0; ; level++) {
+            if (count + 2 <= length * (1.0 - (1.0 - ROOT_DENSITY) * level / height)) {
+                spread(from, from + length, gather(from, from + length, count, position, first, second));
+                return;
+            }
+            if (level == height) {
+                break;
+            }
+            int parentLength = length << 1;
+            int parentFrom = position & -parentLength;
+            count += countMarkers(parentFrom == from ? from + length : parentFrom, length);
+            from = parentFrom;
+            length = parentLength;
+        }
+        rebuild(gather(0, markers.length, 2 * size - 2, position, first, second));
+    }
+
+    private int countMarkers(int from, int length) {
+        int count = 0;
+        for (int segment = from >> segmentShift, to = (from + length) >> segmentShift; segment < to; segment++) {
+            count += segmentCounts[segment];
+        }
+        return count;
+    }
+
+    /**
+     * @return {@code count} markers of {@code [from, to)} in order, with two new ones before {@code position}.
+     */
+    private int[] gather(int from, int to, int count, int position, int first, int second) {
+        int[] sequence = new int[count + 2];
+        int index = 0;
+        for (int current = from; current < to; current++) {
+            if (current == position) {
+                sequence[index++] = first;
+                sequence[index++] = second;
+            }
+            if (markers[current] != EMPTY) {
+                sequence[index++] = markers[current];
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Lays out all markers again, with the smallest capacity which keeps the whole array under its density limit.
+     */
+    private void rebuild(int[] sequence) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * ROOT_DENSITY < sequence.length) {
+            capacity <<= 1;
+        }
+        //segments of about log(capacity) positions, rounded down to a power of two
+        segmentShift = 31 - Integer.numberOfLeadingZeros(Integer.numberOfTrailingZeros(capacity));
+        markers = new int[capacity];
+        segmentCounts = new int[capacity >> segmentShift];
+        spread(0, capacity, sequence);
+    }
+
+    /**
+     * Places {@code sequence} evenly over {@code [from, to)}, which must be segment aligned.
+     */
+    private void spread(int from, int to, int[] sequence) {
+        Arrays.fill(markers, from, to, EMPTY);
+        Arrays.fill(segmentCounts, from >> segmentShift, to >> segmentShift, 0);
+        startPositions.clear(from, to);
+        for (BitSet positions : positionsByPermission.values()) {
+            positions.clear(from, to);
+        }
+        long length = to - from;
+        for (int i = 0; i < sequence.length; i++) {
+            int position = from + (int) (i * length / sequence.length);
+            int marker = sequence[i];
+            int ordinal = marker >>> 1;
+            markers[position] = marker;
+            segmentCounts[position >> segmentShift]++;
+            if (isStart(marker)) {
+                starts[ordinal] = position;
+                startPositions.set(position);
+                setPermissionBits(position, masks[ordinal], true);
+            } else {
+                ends[ordinal] = position;
+            }
+        }
+    }
+
+    private void setPermissionBits(int position, long mask, boolean value) {
+        for (long remaining = mask; remaining != 0L; remaining &= remaining - 1) {
+            Permissions permission = PERMISSIONS[Long.numberOfTrailingZeros(remaining)];
+            positionsByPermission.get(permission).set(position, value);
+        }
+    }
+
+    private int ordinalOf(User user) {
+        Integer ordinal = ordinals.get(user);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("User with id=" + (user == null ? null : user.getId())
+                    + " is not indexed.");
+        }
+        return ordinal;
+    }
+
+    private static int startMarker(int ordinal) {
+        return ordinal << 1;
+    }
+
+    private static int endMarker(int ordinal) {
+        return ordinal << 1 | 1;
+    }
+
+    private static boolean isStart(int marker) {
+        return (marker & 1) == 0;
+    }
+
+    private static User parentOf(User user) {
+        Optional<User> parent = user.getParent();
+        return parent == null ? null : parent.orElse(null);
+    }
+}
@@ -0,0 +1,273 @@
+package com.issues.lambda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs stream pipelines sequentially or in parallel depending on the input size.
+ *
+ * Parallel streams are not free: splitting, task scheduling and merging of partial results cost more than filtering of a
+ * couple of thousands elements. Also, by default parallel streams run in {@link ForkJoinPool#commonPool()}, shared with
+ * everything else in JVM. That's why this class:
+ * 1) runs small inputs sequentially;
+ * 2) uses its own {@link ForkJoinPool};
+ * 3) splits input into chunks not smaller than adaptive cutoff (a few chunks per worker);
+ * 4) collects results with {@link #toOrderedList()}, which keeps encounter order without copying partial lists on
+ * every merge.
+ *
+ * Input lists should be {@link RandomAccess}, otherwise they are processed sequentially.
+ */
+public class AdaptiveExecution {
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 10_000;
+
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final int MIN_CHUNK_SIZE = 1_024;
+
+    private static volatile AdaptiveExecution defaultInstance;
+
+    private final ForkJoinPool pool;
+
+    private final int parallelThreshold;
+
+    public AdaptiveExecution(int parallelism, int parallelThreshold) {
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("adaptive-execution-" + counter.incrementAndGet());
+            return thread;
+        }, null, false);
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Lazily created instance using all available processors.
+     * @return
+     */
+    public static AdaptiveExecution defaultInstance() {
+        AdaptiveExecution instance = defaultInstance;
+        if (instance == null) {
+            synchronized (AdaptiveExecution.class) {
+                instance = defaultInstance;
+                if (instance == null) {
+                    instance = new AdaptiveExecution(Runtime.getRuntime().availableProcessors(), DEFAULT_PARALLEL_THRESHOLD);
+                    defaultInstance = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    public <T> List<T> filter(List<T> source, Predicate<? super T> predicate) {
+        if (!isParallel(source.size()) || !(source instanceof RandomAccess)) {
+            List<T> result = new ArrayList<>();
+            for (T t : source) {
+                if (predicate.test(t)) {
+                    result.add(t);
+                }
+            }
+            return result;
+        }
+        return pool.submit(() -> stream(source::get, 0, source.size())
+                        .filter(predicate)
+                        .collect(toOrderedList()))
+                .join();
+    }
+
+    /**
+     * Creates list of {@code mapper.apply(i)} for every {@code i} from {@code from} (inclusive) to {@code to} (exclusive).
+     * @param from
+     * @param to
+     * @param mapper
+     * @param <R>
+     * @return
+     */
+    public <R> List<R> mapRange(int from, int to, IntFunction<? extends R> mapper) {
+        if (!isParallel(to - from)) {
+            List<R> result = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                result.add(mapper.apply(i));
+            }
+            return result;
+        }
+        return pool.submit(() -> this.<R>stream(mapper, from, to)
+                        .collect(toOrderedList()))
+                .join();
+    }
+
+    /**
+     * Splits {@code [0, size)} into chunks and passes them to {@code action}, in parallel if {@code size} is large
+     * enough. Useful for array based bulk operations, where streams of elements would box every value.
+     * @param size
+     * @param action
+     */
+    public void forEachChunk(int size, RangeConsumer action) {
+        if (!isParallel(size)) {
+            action.accept(0, size);
+            return;
+        }
+        int chunks = Math.min(pool.getParallelism() * CHUNKS_PER_WORKER, (size + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE);
+        int chunkSize = (size + chunks - 1) / chunks;
+        pool.submit(() -> IntStream.range(0, chunks)
+                        .parallel()
+                        .forEach(chunk -> action.accept(chunk * chunkSize,
+                                (int) Math.min(size, (long) (chunk + 1) * chunkSize))))
+                .join();
+    }
+
+    public boolean isParallel(int size) {
+        return size >= parallelThreshold && pool.getParallelism() > 1;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Ordered collector which keeps partial results as chunks and concatenates them only once, in finisher. Unlike
+     * {@link java.util.stream.Collectors#toList()}, combiner does not copy elements.
+     * @param <T>
+     * @return
+     */
+    public static <T> Collector<T, ?, List<T>> toOrderedList() {
+        return new OrderedListCollector<>();
+    }
+
+    private <T> Stream<T> stream(IntFunction<? extends T> elements, int from, int to) {
+        int chunks = pool.getParallelism() * CHUNKS_PER_WORKER;
+        int cutoff = Math.max(MIN_CHUNK_SIZE, (to - from) / chunks);
+        return StreamSupport.stream(new IndexedSpliterator<>(elements, from, to, cutoff), true);
+    }
+
+    /**
+     * Action on a range of indexes, from inclusive, to exclusive.
+     */
+    @FunctionalInterface
+    public interface RangeConsumer {
+        void accept(int from, int to);
+    }
+
+    /**
+     * Splits index range in halves until it becomes smaller than {@code cutoff}.
+     * @param <T>
+     */
+    static final class IndexedSpliterator<T> implements Spliterator<T> {
+
+        private final IntFunction<? extends T> elements;
+
+        private final int cutoff;
+
+        private int from;
+
+        private final int to;
+
+        IndexedSpliterator(IntFunction<? extends T> elements, int from, int to, int cutoff) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(elements.apply(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (int i = from; i < to; i++) {
+                action.accept(elements.apply(i));
+            }
+            from = to;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int size = to - from;
+            if (size < 2 * cutoff) {
+                return null;
+            }
+            int middle = from + (size >>> 1);
+            Spliterator<T> prefix = new IndexedSpliterator<>(elements, from, middle, cutoff);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
+    private static final class OrderedListCollector<T> implements Collector<T, List<List<T>>, List<T>> {
+
+        @Override
+        public Supplier<List<List<T>>> supplier() {
+            return () -> {
+                List<List<T>> chunks = new ArrayList<>();
+                chunks.add(new ArrayList<>());
+                return chunks;
+            };
+        }
+
+        @Override
+        public BiConsumer<List<List<T>>, T> accumulator() {
+            return (chunks, t) -> chunks.get(chunks.size() - 1).add(t);
+        }
+
+        @Override
+        public BinaryOperator<List<List<T>>> combiner() {
+            return (left, right) -> {
+                left.addAll(right);
+                return left;
+            };
+        }
+
+        @Override
+        public Function<List<List<T>>, List<T>> finisher() {
+            return chunks -> {
+                int size = 0;
+                for (List<T> chunk : chunks) {
+                    size += chunk.size();
+                }
+                List<T> result = new ArrayList<>(size);
+                chunks.forEach(result::addAll);
+                return result;
+            };
+        }
+
+        @Override
+        public Set<Characteristics> characteristics() {
+            return Collections.unmodifiableSet(EnumSet.noneOf(Characteristics.class));
+        }
+    }
+}
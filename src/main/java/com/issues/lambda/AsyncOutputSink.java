@@ -0,0 +1,433 @@
+package com.issues.lambda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Line oriented output which does not block callers on I/O, a replacement for {@code System.out::println} in hot
+ * paths: every {@code println} takes {@link java.io.PrintStream} lock and flushes, so all threads printing at the same
+ * time wait for each other and for the console.
+ *
+ * Lines are put into a bounded lock-free ring buffer (multiple producers, single consumer) and a background writer
+ * thread drains it, encodes lines into a single buffer and writes the whole batch with one
+ * {@link WritableByteChannel#write} call. When buffer is full, {@link OverflowPolicy} decides what to do.
+ *
+ * {@link #flush()} waits till lines written before it are passed to the channel, {@link #close()} writes all the
+ * remaining lines and stops the writer. Channel is owned by the caller and is not closed.
+ */
+public class AsyncOutputSink implements Consumer<String>, AutoCloseable {
+
+    public enum OverflowPolicy {
+        /**
+         * Caller waits for free space, nothing is lost.
+         */
+        BLOCK,
+        /**
+         * Line is dropped when buffer is full.
+         */
+        DROP,
+        /**
+         * When buffer is more than half full, only every {@code sampleRate}-th line is accepted, and lines are
+         * dropped when buffer is full. Output is thinned instead of cut off.
+         */
+        SAMPLE
+    }
+
+    private static final int MAX_SPINS = 64;
+
+    private static final long PARK_NANOS = 100_000L;
+
+    private final String[] lines;
+
+    /**
+     * Vyukov's bounded queue: slot is free for position {@code p} when its sequence is {@code p}, and contains a line
+     * published at position {@code p} when its sequence is {@code p + 1}.
+     */
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final WritableByteChannel channel;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int sampleRate;
+
+    private final Charset charset;
+
+    private final byte[] lineSeparator;
+
+    private final int batchBytes;
+
+    private final Thread writer;
+
+    private final LongAdder droppedLines = new LongAdder();
+
+    private final AtomicLong pressuredLines = new AtomicLong();
+
+    /**
+     * Position of the last line passed to the channel, written by writer thread only.
+     */
+    private volatile long writtenPosition;
+
+    private volatile boolean writerParked;
+
+    private volatile boolean closed;
+
+    private volatile IOException failure;
+
+    private AsyncOutputSink(Builder builder, WritableByteChannel channel) {
+        if (builder.capacity <= 1 || Integer.bitCount(builder.capacity) != 1) {
+            throw new IllegalArgumentException("capacity should be a power of two: " + builder.capacity);
+        }
+        if (builder.sampleRate <= 0) {
+            throw new IllegalArgumentException("sampleRate should be positive: " + builder.sampleRate);
+        }
+        if (builder.batchBytes < 64) {
+            throw new IllegalArgumentException("batchBytes should be at least 64: " + builder.batchBytes);
+        }
+        this.lines = new String[builder.capacity];
+        this.sequences = new AtomicLongArray(builder.capacity);
+        for (int i = 0; i < builder.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = builder.capacity - 1;
+        this.channel = channel;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.sampleRate = builder.sampleRate;
+        this.charset = builder.charset;
+        this.lineSeparator = System.lineSeparator().getBytes(builder.charset);
+        this.batchBytes = builder.batchBytes;
+        this.writer = new Thread(this::writeLoop, builder.threadName);
+        writer.setDaemon(true);
+        writer.start();
+        if (builder.shutdownHook) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::closeQuietly, builder.threadName + "-shutdown"));
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Adds a line, the same as {@link #println(String)}.
+     * @param line
+     */
+    @Override
+    public void accept(String line) {
+        println(line);
+    }
+
+    /**
+     * @param line {@code null} is printed as "null", the same as {@link java.io.PrintStream#println(String)}.
+     * @return {@code false} if line was dropped according to overflow policy.
+     */
+    public boolean println(String line) {
+        checkOpen();
+        String value = String.valueOf(line);
+        switch (overflowPolicy) {
+            case BLOCK:
+                offerBlocking(value);
+                return true;
+            case SAMPLE:
+                if (isUnderPressure() && pressuredLines.getAndIncrement() % sampleRate != 0) {
+                    droppedLines.increment();
+                    return false;
+                }
+                return offerOrDrop(value);
+            default:
+                return offerOrDrop(value);
+        }
+    }
+
+    /**
+     * @return adapter for {@code forEach}/{@code ifPresent} of arbitrary objects, printed with {@link String#valueOf}.
+     */
+    public Consumer<Object> printer() {
+        return value -> println(String.valueOf(value));
+    }
+
+    /**
+     * Waits till all lines added before this call are passed to the channel.
+     * @throws IOException if writer failed.
+     */
+    public void flush() throws IOException {
+        long target = tail.get();
+        for (int spins = 0; writtenPosition < target; spins++) {
+            checkFailure();
+            if (!writer.isAlive()) {
+                throw new IllegalStateException("Sink writer is stopped, " + (target - writtenPosition)
+                        + " lines are not written.");
+            }
+            LockSupport.unpark(writer);
+            pause(spins);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Writes all the remaining lines and stops the writer thread. Channel is not closed. Lines added concurrently with
+     * this call may be lost.
+     * @throws IOException if writer failed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    public long getDroppedLines() {
+        return droppedLines.sum();
+    }
+
+    public long getWrittenLines() {
+        return writtenPosition;
+    }
+
+    private void offerBlocking(String line) {
+        for (int spins = 0; !offer(line); spins++) {
+            checkOpen();
+            LockSupport.unpark(writer);
+            pause(spins);
+        }
+    }
+
+    private boolean offerOrDrop(String line) {
+        if (offer(line)) {
+            return true;
+        }
+        droppedLines.increment();
+        return false;
+    }
+
+    private boolean offer(String line) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    lines[index] = line;
+                    //volatile write publishes the line to the writer
+                    sequences.set(index, position + 1);
+                    if (writerParked) {
+                        LockSupport.unpark(writer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                //slot still holds a line from the previous lap: buffer is full
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private boolean isUnderPressure() {
+        return tail.get() - writtenPosition > (mask + 1) / 2;
+    }
+
+    private void writeLoop() {
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(batchBytes);
+        long position = 0;
+        try {
+            while (true) {
+                long batchEnd = position;
+                for (int index = (int) batchEnd & mask; sequences.get(index) == batchEnd + 1;
+                     index = (int) batchEnd & mask) {
+                    String line = lines[index];
+                    lines[index] = null;
+                    //slot is released before encoding, so producers are not blocked by I/O
+                    sequences.set(index, batchEnd + mask + 1);
+                    batchEnd++;
+                    encode(line, encoder, buffer);
+                }
+                if (batchEnd != position) {
+                    writeFully(buffer);
+                    position = batchEnd;
+                    writtenPosition = position;
+                } else if (closed && tail.get() == position) {
+                    return;
+                } else {
+                    writerParked = true;
+                    //re-check after the flag is visible, so a producer either sees it or its line is seen here
+                    if (sequences.get((int) position & mask) != position + 1 && !closed) {
+                        LockSupport.parkNanos(this, 10_000_000L);
+                    }
+                    writerParked = false;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException | Error e) {
+            failure = new IOException("Sink writer failed.", e);
+        }
+    }
+
+    private void encode(String line, CharsetEncoder encoder, ByteBuffer buffer) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        //batch buffer is written out whenever it is full, long lines are written in several calls
+        for (CoderResult result = encoder.encode(chars, buffer, true); result.isOverflow();
+             result = encoder.encode(chars, buffer, true)) {
+            writeFully(buffer);
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            writeFully(buffer);
+        }
+        if (buffer.remaining() < lineSeparator.length) {
+            writeFully(buffer);
+        }
+        buffer.put(lineSeparator);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Sink is closed.");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            //nothing could be done on JVM shutdown
+        }
+    }
+
+    private static void pause(int spins) {
+        if (spins < MAX_SPINS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    public static final class Builder {
+        private int capacity = 8192;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private int sampleRate = 10;
+        private int batchBytes = 64 * 1024;
+        private Charset charset = StandardCharsets.UTF_8;
+        private String threadName = "async-output-sink";
+        private boolean shutdownHook;
+
+        private Builder() {
+        }
+
+        /**
+         * @param val amount of lines in ring buffer, power of two.
+         * @return
+         */
+        public Builder withCapacity(int val) {
+            capacity = val;
+            return this;
+        }
+
+        public Builder withOverflowPolicy(OverflowPolicy val) {
+            overflowPolicy = val;
+            return this;
+        }
+
+        /**
+         * Used by {@link OverflowPolicy#SAMPLE}.
+         * @param val
+         * @return
+         */
+        public Builder withSampleRate(int val) {
+            sampleRate = val;
+            return this;
+        }
+
+        /**
+         * @param val size of buffer for a single channel write.
+         * @return
+         */
+        public Builder withBatchBytes(int val) {
+            batchBytes = val;
+            return this;
+        }
+
+        public Builder withCharset(Charset val) {
+            charset = val;
+            return this;
+        }
+
+        public Builder withThreadName(String val) {
+            threadName = val;
+            return this;
+        }
+
+        /**
+         * Closes sink on JVM shutdown, so lines are not lost when application exits without {@link #close()}.
+         * @return
+         */
+        public Builder withShutdownHook() {
+            shutdownHook = true;
+            return this;
+        }
+
+        public AsyncOutputSink build(WritableByteChannel channel) {
+            return new AsyncOutputSink(this, channel);
+        }
+
+        /**
+         * Please, note that {@code System.out} is still used by other code, so lines of both could be interleaved.
+         * @return
+         */
+        public AsyncOutputSink buildForStandardOutput() {
+            return new AsyncOutputSink(this, Channels.newChannel(System.out));
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.issues.lambda;
 
+import com.issues.metrics.MetricsRegistry;
+import com.issues.metrics.Timer;
+
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 
 /**
@@ -16,12 +22,41 @@ public class CheckAndReactPattern {
      * We have some Service with complex business logic, which accepts {@code List<Domain>} as a parameter.
      */
     public static class BusinessLogicService {
+
+        private final Timer performCalculationsTimer;
+
+        public BusinessLogicService() {
+            this(MetricsRegistry.noop());
+        }
+
+        public BusinessLogicService(MetricsRegistry metrics) {
+            this.performCalculationsTimer = metrics.timer("BusinessLogicService.performCalculations");
+        }
+
         public boolean checkCondition() {
             return false;
         }
 
         public void performCalculations(List<Domain> collection) {
+            long start = performCalculationsTimer.start();
+            try {
+                //business logic goes here
+            } finally {
+                performCalculationsTimer.stop(start);
+            }
+        }
 
+        /**
+         * Streaming version of {@link #performCalculations(List)} for data sets which do not fit into memory: domains
+         * are pulled from {@code source} and processed in chunks of {@code chunkSize}.
+         * @param source
+         * @param chunkSize
+         * @return processor with progress counters.
+         */
+        public ChunkedProcessor<Domain> performCalculations(Stream<Domain> source, int chunkSize) {
+            ChunkedProcessor<Domain> processor = new ChunkedProcessor<>(chunkSize, this::performCalculations);
+            processor.process(source);
+            return processor;
         }
     }
 
@@ -29,15 +64,91 @@ public class CheckAndReactPattern {
      * The same service which accepts {@code Supplier<List<Domain>>} as a parameter.
      */
     public static class BusinessLogicServiceLazy {
+
+        private final Executor prefetchExecutor;
+
+        private final Duration loadTimeout;
+
+        private final Timer performCalculationsTimer;
+
+        public BusinessLogicServiceLazy() {
+            this(null, null);
+        }
+
+        /**
+         * When {@link #checkCondition()} is slow and usually true, domain loading could be started speculatively, in
+         * parallel with the check, see {@link LazySuppliers#prefetch(Supplier, Executor, Duration)}.
+         * @param prefetchExecutor
+         * @param loadTimeout {@code null} to wait for prefetched domains without timeout.
+         */
+        public BusinessLogicServiceLazy(Executor prefetchExecutor, Duration loadTimeout) {
+            this(prefetchExecutor, loadTimeout, MetricsRegistry.noop());
+        }
+
+        /**
+         * @param prefetchExecutor {@code null} to load domains only when condition is true, without prefetching.
+         * @param loadTimeout
+         * @param metrics timer is named after the method, the same way as in {@link BusinessLogicService}, so eager
+         *                and lazy variants could be compared.
+         */
+        public BusinessLogicServiceLazy(Executor prefetchExecutor, Duration loadTimeout, MetricsRegistry metrics) {
+            this.prefetchExecutor = prefetchExecutor;
+            this.loadTimeout = loadTimeout;
+            this.performCalculationsTimer = metrics.timer("BusinessLogicServiceLazy.performCalculations");
+        }
+
         public boolean checkCondition() {
             return false;
         }
 
         public void performCalculations(Supplier<List<Domain>> domainSupplier) {
+            long start = performCalculationsTimer.start();
+            try {
+                if (prefetchExecutor == null) {
+                    //memoized, so the rest of the logic could call get() as many times as needed
+                    performCalculationsIfNeeded(LazySuppliers.memoize(domainSupplier));
+                } else {
+                    performCalculationsPrefetched(domainSupplier);
+                }
+            } finally {
+                performCalculationsTimer.stop(start);
+            }
+        }
+
+        /**
+         * Streaming version of {@link #performCalculations(Supplier)}: stream is not even created if condition is falsy.
+         * @param sourceSupplier
+         * @param chunkSize
+         */
+        public void performStreamingCalculations(Supplier<Stream<Domain>> sourceSupplier, int chunkSize) {
+            if (checkCondition()) {
+                new ChunkedProcessor<Domain>(chunkSize, chunk -> {
+                    //the rest of the logic goes here, chunk by chunk
+                }).process(sourceSupplier.get());
+            }
+        }
+
+        private void performCalculationsPrefetched(Supplier<List<Domain>> domainSupplier) {
+            LazySuppliers.Prefetched<List<Domain>> prefetched =
+                    LazySuppliers.prefetch(domainSupplier, prefetchExecutor, loadTimeout);
+            boolean consumed = false;
+            try {
+                consumed = performCalculationsIfNeeded(prefetched);
+            } finally {
+                //also when check or calculation failed, speculative load should not keep the executor busy
+                if (!consumed) {
+                    prefetched.cancel();
+                }
+            }
+        }
+
+        private boolean performCalculationsIfNeeded(Supplier<List<Domain>> domainSupplier) {
             if (checkCondition()) {
                 List<Domain> domainList = domainSupplier.get(); //only at that point lambda will be invoked.
                 //the rest of the logic goes here
+                return true;
             }
+            return false;
         }
     }
 
@@ -0,0 +1,190 @@
+package com.issues.lambda;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Processes large amount of records in fixed size chunks, so at most a couple of chunks are kept in memory instead of
+ * materializing the whole {@link List}.
+ *
+ * Two modes are supported:
+ * 1) pull: {@link #process(Iterator)}, {@link #process(Stream)}. Records are requested from the source only when
+ * previous chunk is processed, so lazy sources (e.g. database cursor or {@code Files.lines}) are naturally throttled;
+ * 2) push: {@link #openSink(Executor, int)}. Producer pushes records and chunks are processed in another thread. When
+ * {@code maxPendingChunks} chunks are waiting, producer is blocked until consumer catches up.
+ *
+ * Progress counters are updated after every chunk and could be read from any thread.
+ * @param <T>
+ */
+public class ChunkedProcessor<T> {
+
+    private final int chunkSize;
+
+    private final Consumer<List<T>> chunkHandler;
+
+    private final LongAdder processedRecords = new LongAdder();
+
+    private final LongAdder processedChunks = new LongAdder();
+
+    private volatile long startNanos;
+
+    /**
+     * @param chunkSize
+     * @param chunkHandler should not keep reference to the chunk, list is reused in pull mode.
+     */
+    public ChunkedProcessor(int chunkSize, Consumer<List<T>> chunkHandler) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize should be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.chunkHandler = chunkHandler;
+    }
+
+    public void process(Iterator<? extends T> source) {
+        markStarted();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        while (source.hasNext()) {
+            chunk.add(source.next());
+            if (chunk.size() == chunkSize) {
+                handle(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            handle(chunk);
+        }
+    }
+
+    public void process(Spliterator<? extends T> source) {
+        process(Spliterators.iterator(source));
+    }
+
+    /**
+     * Stream is closed after processing.
+     * @param source
+     */
+    public void process(Stream<? extends T> source) {
+        try (Stream<? extends T> stream = source) {
+            process(stream.iterator());
+        }
+    }
+
+    /**
+     * @param executor runs chunk handler, one task per sink.
+     * @param maxPendingChunks amount of full chunks which could wait for processing before producer is blocked.
+     * @return
+     */
+    public Sink openSink(Executor executor, int maxPendingChunks) {
+        markStarted();
+        return new Sink(executor, maxPendingChunks);
+    }
+
+    public long getProcessedRecords() {
+        return processedRecords.sum();
+    }
+
+    public long getProcessedChunks() {
+        return processedChunks.sum();
+    }
+
+    /**
+     * @return processed records per second since the first {@code process}/{@code openSink} call.
+     */
+    public double getThroughputPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return startNanos == 0 || elapsed <= 0 ? 0.0 : processedRecords.sum() * 1_000_000_000.0 / elapsed;
+    }
+
+    private void markStarted() {
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+    }
+
+    private void handle(List<T> chunk) {
+        chunkHandler.accept(chunk);
+        processedRecords.add(chunk.size());
+        processedChunks.increment();
+    }
+
+    /**
+     * Push side of the processor. Not thread safe, should be used by a single producer.
+     */
+    public final class Sink implements Consumer<T>, AutoCloseable {
+
+        private final List<T> endOfStream = new ArrayList<>(0);
+
+        private final BlockingQueue<List<T>> pending;
+
+        private final CompletableFuture<Void> completion;
+
+        private List<T> chunk = new ArrayList<>(chunkSize);
+
+        private Sink(Executor executor, int maxPendingChunks) {
+            this.pending = new ArrayBlockingQueue<>(maxPendingChunks);
+            this.completion = CompletableFuture.runAsync(this::drain, executor);
+        }
+
+        /**
+         * Blocks if there are too many chunks waiting for processing.
+         * @param record
+         */
+        @Override
+        public void accept(T record) {
+            chunk.add(record);
+            if (chunk.size() == chunkSize) {
+                put(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+
+        /**
+         * Flushes the last chunk and waits till all the chunks are processed.
+         */
+        @Override
+        public void close() {
+            if (!chunk.isEmpty()) {
+                put(chunk);
+                chunk = new ArrayList<>(0);
+            }
+            put(endOfStream);
+            completion.join();
+        }
+
+        private void put(List<T> records) {
+            try {
+                while (!pending.offer(records, 100, TimeUnit.MILLISECONDS)) {
+                    if (completion.isDone()) {
+                        //consumer failed, rethrow its exception instead of blocking forever
+                        completion.join();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for chunk processing.", e);
+            }
+        }
+
+        private void drain() {
+            try {
+                for (List<T> records = pending.take(); records != endOfStream; records = pending.take()) {
+                    handle(records);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for chunks.", e);
+            }
+        }
+    }
+}
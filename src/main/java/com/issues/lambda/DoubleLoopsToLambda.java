@@ -2,6 +2,9 @@ package com.issues.lambda;
 
 import com.issues.Permissions;
 import com.issues.User;
+import com.issues.collections.UserPermissionIndex;
+import com.issues.metrics.MetricsRegistry;
+import com.issues.metrics.Timer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,6 +17,35 @@ import java.util.stream.Collectors;
  */
 public class DoubleLoopsToLambda {
 
+    private final Timer filterManagersBadTimer;
+
+    private final Timer filterManagersBetterTimer;
+
+    private final Timer filterManagersBestTimer;
+
+    private final Timer filterManagersParallelTimer;
+
+    private final Timer filterManagersIndexedTimer;
+
+    private final Timer filterManagersBestIndexedTimer;
+
+    public DoubleLoopsToLambda() {
+        this(MetricsRegistry.noop());
+    }
+
+    /**
+     * Every variant has its own timer named after the method, so variants could be compared on real traffic.
+     * @param metrics
+     */
+    public DoubleLoopsToLambda(MetricsRegistry metrics) {
+        this.filterManagersBadTimer = metrics.timer("DoubleLoopsToLambda.filterManagersBad");
+        this.filterManagersBetterTimer = metrics.timer("DoubleLoopsToLambda.filterManagersBetter");
+        this.filterManagersBestTimer = metrics.timer("DoubleLoopsToLambda.filterManagersBest");
+        this.filterManagersParallelTimer = metrics.timer("DoubleLoopsToLambda.filterManagersParallel");
+        this.filterManagersIndexedTimer = metrics.timer("DoubleLoopsToLambda.filterManagersIndexed");
+        this.filterManagersBestIndexedTimer = metrics.timer("DoubleLoopsToLambda.filterManagersBestIndexed");
+    }
+
     /**
      * Old school method to filter collection of {@code User} and get {@code Permission.MANAGER} users only.
      * See the double loop.
@@ -21,15 +53,21 @@ public class DoubleLoopsToLambda {
      * @return
      */
     public List<User> filterManagersBad(final List<User> users) {
-        List<User> result = new ArrayList<>();
-        for (User user : users) {
-            for (Permissions permission : user.getPermissions()) {
-                if(Permissions.MANAGER.equals(permission)) {
-                    result.add(user);
+        long start = filterManagersBadTimer.start();
+        try {
+            List<User> result = new ArrayList<>();
+            for (User user : users) {
+                for (Permissions permission : user.getPermissions()) {
+                    if(Permissions.MANAGER.equals(permission)) {
+                        result.add(user);
+                        break; //otherwise user with duplicated MANAGER permission is added twice
+                    }
                 }
             }
+            return result;
+        } finally {
+            filterManagersBadTimer.stop(start);
         }
-        return result;
     }
 
     /**
@@ -39,10 +77,14 @@ public class DoubleLoopsToLambda {
      * @return
      */
     public List<User> filterManagersBetter(final List<User> users) {
-
-        return users.stream()
-                .filter(user -> user.getPermissions().stream().anyMatch(p -> Permissions.MANAGER.equals(p)))
-                .collect(Collectors.toList());
+        long start = filterManagersBetterTimer.start();
+        try {
+            return users.stream()
+                    .filter(user -> user.getPermissions().stream().anyMatch(p -> Permissions.MANAGER.equals(p)))
+                    .collect(Collectors.toList());
+        } finally {
+            filterManagersBetterTimer.stop(start);
+        }
     }
 
     /**
@@ -53,9 +95,63 @@ public class DoubleLoopsToLambda {
      * @return
      */
     public List<User> filterManagersBest(final List<User> users) {
-        return users.stream()
-                    .filter(containsPermissions(Permissions.MANAGER))
-                    .collect(Collectors.toList());
+        long start = filterManagersBestTimer.start();
+        try {
+            return users.stream()
+                        .filter(containsPermissions(Permissions.MANAGER))
+                        .collect(Collectors.toList());
+        } finally {
+            filterManagersBestTimer.stop(start);
+        }
+    }
+
+    /**
+     * The same as {@link #filterManagersBest(List)}, however, large lists are filtered in parallel.
+     * Please, do not just add {@code .parallel()} to the stream: for small lists it is slower than sequential processing,
+     * and it runs in common pool. See {@link AdaptiveExecution}.
+     * @param users
+     * @return
+     */
+    public List<User> filterManagersParallel(final List<User> users) {
+        long start = filterManagersParallelTimer.start();
+        try {
+            return AdaptiveExecution.defaultInstance()
+                    .filter(users, containsPermissions(Permissions.MANAGER));
+        } finally {
+            filterManagersParallelTimer.stop(start);
+        }
+    }
+
+    /**
+     * All the methods above scan permissions of every user. When the same user list is filtered many times, build
+     * {@link UserPermissionIndex} once and answer queries with bitmap operations.
+     * @param index
+     * @return
+     */
+    public List<User> filterManagersIndexed(final UserPermissionIndex index) {
+        long start = filterManagersIndexedTimer.start();
+        try {
+            return index.withAll(Permissions.MANAGER);
+        } finally {
+            filterManagersIndexedTimer.stop(start);
+        }
+    }
+
+    /**
+     * The same as {@link #filterManagersBest(List)}, however, predicate is backed by the index.
+     * @param users
+     * @param index
+     * @return
+     */
+    public List<User> filterManagersBest(final List<User> users, final UserPermissionIndex index) {
+        long start = filterManagersBestIndexedTimer.start();
+        try {
+            return users.stream()
+                        .filter(index.containsPermissions(Permissions.MANAGER))
+                        .collect(Collectors.toList());
+        } finally {
+            filterManagersBestIndexedTimer.stop(start);
+        }
     }
 
     private Predicate<User> containsPermissions(Permissions permissions) {
@@ -1,11 +1,13 @@
 package com.issues.lambda;
 
 import com.issues.User;
+import com.issues.UserTable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * It's one of the most popular misuse that I'm encountering (along with large lambdas). While writing Lambda, first of all,
@@ -36,4 +38,26 @@ public class LambdaSideEffects {
                 .map(i -> User.newBuilder().withId(i).build())
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Side effect free lambdas can be safely executed in parallel. {@link AdaptiveExecution} decides whether it is worth
+     * it based on amount of users.
+     * @param count
+     * @return users with ids from 1 to {@code count}
+     */
+    public List<User> noSideEffects(int count) {
+        return AdaptiveExecution.defaultInstance()
+                .mapRange(1, count + 1, i -> User.newBuilder().withId(i).build());
+    }
+
+    /**
+     * When millions of users are needed, please, consider {@link UserTable}: ids are not boxed and there is no
+     * {@code User} object per row.
+     * @param count
+     * @return read-only users with ids from 1 to {@code count}
+     */
+    public List<User> noSideEffectsColumnar(int count) {
+        return UserTable.fromIds(IntStream.rangeClosed(1, count))
+                .asList();
+    }
 }
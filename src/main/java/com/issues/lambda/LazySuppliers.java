@@ -0,0 +1,121 @@
+package com.issues.lambda;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Helpers for {@link Supplier} based deferred calculations, see {@link CheckAndReactPattern}.
+ *
+ * Plain {@link Supplier} runs calculation on every {@link Supplier#get()}, and calculation could not start before
+ * the caller asks for the value. {@link #memoize(Supplier)} and {@link #prefetch(Supplier, Executor, Duration)} address
+ * both issues.
+ */
+public final class LazySuppliers {
+
+    private LazySuppliers() {
+    }
+
+    /**
+     * Thread safe supplier which invokes {@code delegate} at most once and caches the result. If {@code delegate}
+     * throws, nothing is cached and the next {@link Supplier#get()} tries again.
+     * @param delegate
+     * @param <T>
+     * @return
+     */
+    public static <T> Supplier<T> memoize(Supplier<T> delegate) {
+        return delegate instanceof Memoized || delegate instanceof Prefetched ? delegate : new Memoized<>(delegate);
+    }
+
+    /**
+     * Starts {@code delegate} on {@code executor} right away, so it runs concurrently with the caller (e.g. while
+     * condition is being checked). {@link Prefetched#get()} waits for the result at most {@code timeout}.
+     * Please, call {@link Prefetched#cancel()} if value is not needed anymore.
+     * @param delegate
+     * @param executor
+     * @param timeout {@code null} to wait without timeout.
+     * @param <T>
+     * @return
+     */
+    public static <T> Prefetched<T> prefetch(Supplier<T> delegate, Executor executor, Duration timeout) {
+        return new Prefetched<>(CompletableFuture.supplyAsync(delegate, executor), timeout);
+    }
+
+    private static final class Memoized<T> implements Supplier<T> {
+
+        private volatile Supplier<T> delegate;
+
+        private T value;
+
+        private Memoized(Supplier<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T get() {
+            //value is published by volatile write of delegate
+            if (delegate != null) {
+                synchronized (this) {
+                    Supplier<T> current = delegate;
+                    if (current != null) {
+                        value = current.get();
+                        delegate = null;
+                    }
+                }
+            }
+            return value;
+        }
+    }
+
+    public static final class Prefetched<T> implements Supplier<T> {
+
+        private final CompletableFuture<T> future;
+
+        private final Duration timeout;
+
+        private Prefetched(CompletableFuture<T> future, Duration timeout) {
+            this.future = future;
+            this.timeout = timeout;
+        }
+
+        /**
+         * @return
+         * @throws IllegalStateException if value is not ready within timeout, calculation failed or was cancelled.
+         */
+        @Override
+        public T get() {
+            try {
+                return timeout == null ? future.get() : future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Value is not calculated within " + timeout, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Calculation failed.", e.getCause());
+            } catch (CancellationException e) {
+                throw new IllegalStateException("Calculation was cancelled.", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for calculation.", e);
+            }
+        }
+
+        /**
+         * Drops the result. {@link CompletableFuture} does not interrupt already running calculation, however,
+         * calculation which is not started yet will not be started.
+         */
+        public void cancel() {
+            future.cancel(false);
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+    }
+}
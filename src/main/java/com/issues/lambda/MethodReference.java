@@ -2,9 +2,25 @@ package com.issues.lambda;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class MethodReference {
 
+    private final Consumer<String> output;
+
+    public MethodReference() {
+        //not System.out::println, it would bind the stream at construction time and ignore System.setOut
+        this(s -> System.out.println(s));
+    }
+
+    /**
+     * @param output where methods print, e.g. {@link AsyncOutputSink} to avoid {@code System.out} lock in
+     *               multithreaded code.
+     */
+    public MethodReference(Consumer<String> output) {
+        this.output = output;
+    }
+
     /**
      * If you use :: syntax for non-static method references, please specify the object type of the collection correctly.
      */
@@ -30,13 +46,13 @@ public class MethodReference {
 
     public class A {
         public void method() {
-            System.out.println("A");
+            output.accept("A");
         }
     }
 
     public class B extends A {
         public void method() {
-            System.out.println("B");
+            output.accept("B");
         }
     }
 
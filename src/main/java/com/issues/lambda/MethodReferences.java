@@ -1,9 +1,33 @@
 package com.issues.lambda;
 
+import com.issues.text.LiteralReplacer;
+
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class MethodReferences {
 
+    /**
+     * Compiled once, please, see {@link LiteralReplacer} for bulk and file transformations.
+     */
+    private static final LiteralReplacer PREPROCESSOR = LiteralReplacer.newBuilder()
+            .withReplacement("a", "A")
+            .build();
+
+    private final Consumer<String> output;
+
+    public MethodReferences() {
+        //not System.out::println, it would bind the stream at construction time and ignore System.setOut
+        this(s -> System.out.println(s));
+    }
+
+    /**
+     * @param output where processed strings are printed, e.g. {@link AsyncOutputSink}.
+     */
+    public MethodReferences(Consumer<String> output) {
+        this.output = output;
+    }
+
     /**
      * Instead of lambdas you can use method references. In some cases, it may increase code readability.
      * We create lambda from {@link MethodReferences#preprocessString(String)} method, however, there is pretty much
@@ -13,17 +37,17 @@ public class MethodReferences {
     public void processStringNotRecommended(String s) {
         Optional.ofNullable(s)
                 .map(str -> preprocessString(str))
-                .ifPresent(str -> System.out.println(s));
+                .ifPresent(str -> output.accept(s));
 
     }
 
     public void processStringRecommended(String s) {
         Optional.ofNullable(s)
                 .map(this::preprocessString)
-                .ifPresent(System.out::println);
+                .ifPresent(output);
     }
 
     private String preprocessString(String s) {
-        return s.replace("a", "A");
+        return PREPROCESSOR.apply(s);
     }
 }
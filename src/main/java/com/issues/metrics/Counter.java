@@ -0,0 +1,10 @@
+package com.issues.metrics;
+
+public interface Counter {
+
+    void add(long delta);
+
+    default void increment() {
+        add(1L);
+    }
+}
@@ -0,0 +1,9 @@
+package com.issues.metrics;
+
+/**
+ * JMX view of a counter registered by {@link DefaultMetricsRegistry#registerMBeans()}.
+ */
+public interface CounterMXBean {
+
+    long getCount();
+}
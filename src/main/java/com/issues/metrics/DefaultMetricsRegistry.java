@@ -0,0 +1,209 @@
+package com.issues.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Hashtable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-memory metrics: every timer keeps a {@link LatencyHistogram}, every counter is a {@link LongAdder}, so concurrent
+ * updates from many threads do not contend on a single memory location.
+ *
+ * Metrics could be exposed as MXBeans in {@code com.issues.metrics} domain, see {@link #registerMBeans()}, and/or
+ * dumped as text periodically, see {@link #scheduleDump(ScheduledExecutorService, Duration, Consumer)}.
+ */
+public class DefaultMetricsRegistry implements MetricsRegistry {
+
+    public static final String JMX_DOMAIN = "com.issues.metrics";
+
+    private final ConcurrentHashMap<String, HistogramTimer> timers = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, AdderCounter> counters = new ConcurrentHashMap<>();
+
+    private volatile MBeanServer mBeanServer;
+
+    @Override
+    public Timer timer(String name) {
+        HistogramTimer timer = timers.get(name);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(name, key -> new HistogramTimer());
+            register(timer, "Timer", name);
+        }
+        return timer;
+    }
+
+    @Override
+    public Counter counter(String name) {
+        AdderCounter counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, key -> new AdderCounter());
+            register(counter, "Counter", name);
+        }
+        return counter;
+    }
+
+    /**
+     * @param name
+     * @return snapshot of timer histogram, {@code null} if there is no such timer.
+     */
+    public LatencyHistogram.Snapshot getTimerSnapshot(String name) {
+        HistogramTimer timer = timers.get(name);
+        return timer == null ? null : timer.histogram.snapshot();
+    }
+
+    /**
+     * @param name
+     * @return counter value, 0 if there is no such counter.
+     */
+    public long getCount(String name) {
+        AdderCounter counter = counters.get(name);
+        return counter == null ? 0L : counter.getCount();
+    }
+
+    /**
+     * Registers all the existing and future metrics in platform {@link MBeanServer}.
+     */
+    public void registerMBeans() {
+        registerMBeans(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public void registerMBeans(MBeanServer server) {
+        mBeanServer = server;
+        timers.forEach((name, timer) -> register(timer, "Timer", name));
+        counters.forEach((name, counter) -> register(counter, "Counter", name));
+    }
+
+    /**
+     * Text dump, one metric per line, sorted by name. Latencies are in microseconds.
+     * @return
+     */
+    public String dump() {
+        StringBuilder out = new StringBuilder(256);
+        Map<String, HistogramTimer> sortedTimers = new TreeMap<>(timers);
+        sortedTimers.forEach((name, timer) -> {
+            LatencyHistogram.Snapshot snapshot = timer.histogram.snapshot();
+            out.append(name)
+                    .append(" count=").append(snapshot.getCount())
+                    .append(" mean=").append(micros(snapshot.getMean()))
+                    .append("us p50=").append(micros(snapshot.getP50()))
+                    .append("us p99=").append(micros(snapshot.getP99()))
+                    .append("us p999=").append(micros(snapshot.getP999()))
+                    .append("us max=").append(micros(snapshot.getMax()))
+                    .append("us").append(System.lineSeparator());
+        });
+        new TreeMap<>(counters).forEach((name, counter) -> out.append(name)
+                .append(" count=").append(counter.getCount())
+                .append(System.lineSeparator()));
+        return out.toString();
+    }
+
+    /**
+     * @param scheduler
+     * @param period
+     * @param output e.g. logger or {@link com.issues.lambda.AsyncOutputSink}.
+     * @return future to cancel dumps.
+     */
+    public ScheduledFuture<?> scheduleDump(ScheduledExecutorService scheduler, Duration period,
+                                           Consumer<String> output) {
+        long periodNanos = period.toNanos();
+        return scheduler.scheduleAtFixedRate(() -> output.accept(dump()), periodNanos, periodNanos,
+                TimeUnit.NANOSECONDS);
+    }
+
+    private void register(Object mBean, String type, String name) {
+        MBeanServer server = mBeanServer;
+        if (server == null) {
+            return;
+        }
+        try {
+            server.registerMBean(mBean, new ObjectName(JMX_DOMAIN, createProperties(type, name)));
+        } catch (InstanceAlreadyExistsException e) {
+            //concurrent registerMBeans and timer creation, the same instance is registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register " + type + " " + name + " in JMX.", e);
+        }
+    }
+
+    private static Hashtable<String, String> createProperties(String type, String name) {
+        Hashtable<String, String> properties = new Hashtable<>();
+        properties.put("type", type);
+        properties.put("name", ObjectName.quote(name));
+        return properties;
+    }
+
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    private static final class HistogramTimer implements Timer, TimerMXBean {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        @Override
+        public long start() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void stop(long start) {
+            histogram.record(System.nanoTime() - start);
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getMeanNanos() {
+            return histogram.snapshot().getMean();
+        }
+
+        @Override
+        public long getP50Nanos() {
+            return histogram.snapshot().getP50();
+        }
+
+        @Override
+        public long getP99Nanos() {
+            return histogram.snapshot().getP99();
+        }
+
+        @Override
+        public long getP999Nanos() {
+            return histogram.snapshot().getP999();
+        }
+
+        @Override
+        public long getMaxNanos() {
+            return histogram.snapshot().getMax();
+        }
+    }
+
+    private static final class AdderCounter implements Counter, CounterMXBean {
+
+        private final LongAdder adder = new LongAdder();
+
+        @Override
+        public void add(long delta) {
+            adder.add(delta);
+        }
+
+        @Override
+        public long getCount() {
+            return adder.sum();
+        }
+    }
+}
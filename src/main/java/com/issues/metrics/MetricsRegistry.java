@@ -0,0 +1,28 @@
+package com.issues.metrics;
+
+/**
+ * Service provider interface of metrics: instrumented classes get their {@link Timer}s and {@link Counter}s once, on
+ * construction, and record values on hot paths.
+ *
+ * {@link #noop()} is used by default: its timers do not even read the clock, so disabled metrics cost an empty
+ * method call which is inlined by JIT. {@link DefaultMetricsRegistry} keeps latency histograms in memory and exposes
+ * them via JMX and text dumps, other implementations could bridge to an existing metrics library.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * @param name
+     * @return timer with such name, the same instance for the same name.
+     */
+    Timer timer(String name);
+
+    /**
+     * @param name
+     * @return counter with such name, the same instance for the same name.
+     */
+    Counter counter(String name);
+
+    static MetricsRegistry noop() {
+        return NoopMetrics.INSTANCE;
+    }
+}
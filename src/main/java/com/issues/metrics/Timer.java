@@ -0,0 +1,44 @@
+package com.issues.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures latency of a code block:
+ * <pre>
+ * long start = timer.start();
+ * try {
+ *     ...
+ * } finally {
+ *     timer.stop(start);
+ * }
+ * </pre>
+ * Please, prefer {@code start}/{@code stop} over {@link #record(Supplier)} on hot paths, as lambda capturing local
+ * variables is allocated on every call.
+ */
+public interface Timer {
+
+    /**
+     * @return start time in nanoseconds, to be passed to {@link #stop(long)}.
+     */
+    long start();
+
+    void stop(long start);
+
+    default <T> T record(Supplier<T> action) {
+        long start = start();
+        try {
+            return action.get();
+        } finally {
+            stop(start);
+        }
+    }
+
+    default void record(Runnable action) {
+        long start = start();
+        try {
+            action.run();
+        } finally {
+            stop(start);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.issues.metrics;
+
+/**
+ * JMX view of a timer registered by {@link DefaultMetricsRegistry#registerMBeans()}. All the values are in
+ * nanoseconds, every getter takes a new histogram snapshot.
+ */
+public interface TimerMXBean {
+
+    long getCount();
+
+    double getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+
+    long getMaxNanos();
+}
@@ -2,10 +2,19 @@ package com.issues.optional;
 
 import com.issues.Permissions;
 import com.issues.User;
+import com.issues.hierarchy.EffectivePermissionCache;
+import com.issues.metrics.MetricsRegistry;
+import com.issues.metrics.Timer;
+import com.issues.repository.UserRepository;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * {@link Optional} is an API addition for Java8. Main purpose is to reduce redundant null pointer checks
@@ -20,6 +29,43 @@ import java.util.function.Supplier;
  */
 public class CheckAndGetPattern {
 
+    private final UserRepository userRepository;
+
+    private final Timer getPermissionsIncorrectTimer;
+
+    private final Timer getPermissionsTimer;
+
+    private final Timer getPermissionsBatchTimer;
+
+    /**
+     * Dummy repository which "finds" user for every id.
+     */
+    public CheckAndGetPattern() {
+        this(ids -> Arrays.stream(ids)
+                .boxed()
+                .collect(Collectors.toMap(Function.identity(), id -> User.newBuilder().withId(id).build(), (a, b) -> a)));
+    }
+
+    /**
+     * Please, consider {@link com.issues.repository.BatchingUserLoader} when permissions are requested in loops.
+     * @param userRepository
+     */
+    public CheckAndGetPattern(UserRepository userRepository) {
+        this(userRepository, MetricsRegistry.noop());
+    }
+
+    /**
+     * Every variant of permissions lookup has its own timer named after the method.
+     * @param userRepository
+     * @param metrics
+     */
+    public CheckAndGetPattern(UserRepository userRepository, MetricsRegistry metrics) {
+        this.userRepository = userRepository;
+        this.getPermissionsIncorrectTimer = metrics.timer("CheckAndGetPattern.getPermissionsByUserIdIncorrect");
+        this.getPermissionsTimer = metrics.timer("CheckAndGetPattern.getPermissionsByUserId");
+        this.getPermissionsBatchTimer = metrics.timer("CheckAndGetPattern.getPermissionsByUserIds");
+    }
+
     /**
      * Old way of checking something using ternary operator.
      * @param user
@@ -40,6 +86,27 @@ public class CheckAndGetPattern {
                 .orElse(false);
     }
 
+    /**
+     * Both methods above scan the permissions list. When check is on the hot path, prefer constant time
+     * {@link com.issues.PermissionSet} lookup.
+     * @param user
+     * @return
+     */
+    public boolean isAdmin(User user) {
+        return user != null && user.hasPermission(Permissions.ADMIN);
+    }
+
+    /**
+     * All the checks above ignore permissions inherited from parents. Walking {@link User#getParent()} on every check
+     * is O(depth), please, use {@link EffectivePermissionCache} instead.
+     * @param user
+     * @param permissionCache
+     * @return
+     */
+    public boolean isEffectiveAdmin(User user, EffectivePermissionCache permissionCache) {
+        return user != null && permissionCache.hasEffectivePermission(user, Permissions.ADMIN);
+    }
+
     /**
      * Incorrect way of converting program flow to use {@link Optional}. In most of the cases, such situations
      * happen when DAO/Model was refactored to Java8, however, controller logic stayed as-is.
@@ -47,12 +114,17 @@ public class CheckAndGetPattern {
      * @return
      */
     public List<Permissions> getPermissionsByUserIdIncorrect(int id) {
-        Optional<User> user = getUserById(id);
+        long start = getPermissionsIncorrectTimer.start();
+        try {
+            Optional<User> user = getUserById(id);
 
-        if (user.isPresent()) {
-            return user.get().getPermissions();
-        } else {
-            throw new IllegalArgumentException("User with id=" + id + " not found.");
+            if (user.isPresent()) {
+                return user.get().getPermissions();
+            } else {
+                throw new IllegalArgumentException("User with id=" + id + " not found.");
+            }
+        } finally {
+            getPermissionsIncorrectTimer.stop(start);
         }
     }
 
@@ -62,9 +134,14 @@ public class CheckAndGetPattern {
      * @return
      */
     public List<Permissions> getPermissionsByUserId(int id) {
-        return getUserById(id)
-                .orElseThrow(()->new IllegalArgumentException("User with id=" + id + " not found."))
-                .getPermissions();
+        long start = getPermissionsTimer.start();
+        try {
+            return getUserById(id)
+                    .orElseThrow(()->new IllegalArgumentException("User with id=" + id + " not found."))
+                    .getPermissions();
+        } finally {
+            getPermissionsTimer.stop(start);
+        }
 
         /**
          * In case requirements is to return some default value, use {@link Optional#orElseGet(Supplier)}
@@ -76,8 +153,30 @@ public class CheckAndGetPattern {
 
 
 
+    /**
+     * Batch version of {@link #getPermissionsByUserId(int)}: all the users are loaded with a single repository call.
+     * @param ids
+     * @return permissions by user id, {@code null} permissions are kept as is, the same as in the single id version.
+     */
+    public Map<Integer, List<Permissions>> getPermissionsByUserIds(int[] ids) {
+        long start = getPermissionsBatchTimer.start();
+        try {
+            Map<Integer, User> users = userRepository.getUsersByIds(ids);
+            //not Collectors.toMap, it does not accept null values
+            Map<Integer, List<Permissions>> result = new HashMap<>();
+            for (int id : ids) {
+                User user = Optional.ofNullable(users.get(id))
+                        .orElseThrow(() -> new IllegalArgumentException("User with id=" + id + " not found."));
+                result.put(id, user.getPermissions());
+            }
+            return result;
+        } finally {
+            getPermissionsBatchTimer.stop(start);
+        }
+    }
+
     private Optional<User> getUserById(int id) {
-        return Optional.of(User.newBuilder().withId(id).build());
+        return userRepository.getUserById(id);
     }
 
 }
@@ -1,6 +1,7 @@
 package com.issues.optional;
 
 import com.issues.User;
+import com.issues.hierarchy.AncestorIndex;
 
 import java.util.Optional;
 
@@ -51,4 +52,31 @@ public class OptionalAPI {
                 .map(User::getId)
                 .orElse(null);
     }
+
+    /**
+     * Generalized version of {@link #getGrandParentId(User)}: depth 1 is parent, depth 2 is grandparent and so on.
+     * Every level is still one hop through {@link Optional}: {@code map(User::getParent)} unwrapped with
+     * {@code orElseGet(Optional::empty)}, not {@link Optional#flatMap}, as parent of a user which never had one is
+     * {@code null} and {@code flatMap} would throw {@link NullPointerException}. For deep hierarchies and repeated
+     * queries please, use {@link AncestorIndex}.
+     * @param user
+     * @param depth
+     * @return
+     */
+    public Integer getAncestorId(User user, int depth) {
+        Optional<User> ancestor = Optional.ofNullable(user);
+        for (int i = 0; i < depth && ancestor.isPresent(); i++) {
+            //parent is null, not empty, for users which never had one
+            ancestor = ancestor.map(User::getParent).orElseGet(Optional::empty);
+        }
+        return ancestor
+                .map(User::getId)
+                .orElse(null);
+    }
+
+    public Integer getAncestorId(AncestorIndex index, User user, int depth) {
+        return index.getAncestor(user, depth)
+                .map(User::getId)
+                .orElse(null);
+    }
 }
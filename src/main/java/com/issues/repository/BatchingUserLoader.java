@@ -0,0 +1,163 @@
+package com.issues.repository;
+
+import com.issues.User;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single user lookups into batches (the same idea as DataLoader in GraphQL world).
+ *
+ * Ids requested via {@link #load(int)} are collected for {@code batchWindow} (or until {@code maxBatchSize} ids are
+ * collected) and then loaded with a single {@link UserRepository#getUsersByIds(int[])} call. The same id requested several
+ * times within a window is loaded once. Every caller gets its own {@link CompletableFuture}.
+ *
+ * Loader implements {@link UserRepository} itself, so it could be used instead of the original repository, however, in
+ * that case every {@link #getUserById(int)} blocks for up to {@code batchWindow}.
+ */
+public class BatchingUserLoader implements UserRepository, AutoCloseable {
+
+    private final UserRepository delegate;
+
+    private final int maxBatchSize;
+
+    private final long batchWindowNanos;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean ownScheduler;
+
+    private final Object lock = new Object();
+
+    /**
+     * Guarded by {@link #lock}.
+     */
+    private Map<Integer, CompletableFuture<Optional<User>>> pending = new LinkedHashMap<>();
+
+    /**
+     * Guarded by {@link #lock}.
+     */
+    private ScheduledFuture<?> scheduledDispatch;
+
+    /**
+     * Batches are loaded in {@code scheduler} threads, so pool size limits amount of concurrent batches.
+     * @param delegate
+     * @param maxBatchSize
+     * @param batchWindow
+     * @param scheduler
+     */
+    public BatchingUserLoader(UserRepository delegate, int maxBatchSize, Duration batchWindow,
+                              ScheduledExecutorService scheduler) {
+        this(delegate, maxBatchSize, batchWindow, scheduler, false);
+    }
+
+    public BatchingUserLoader(UserRepository delegate, int maxBatchSize, Duration batchWindow) {
+        this(delegate, maxBatchSize, batchWindow, Executors.newScheduledThreadPool(
+                Runtime.getRuntime().availableProcessors(), r -> {
+                    Thread thread = new Thread(r, "batching-user-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                }), true);
+    }
+
+    private BatchingUserLoader(UserRepository delegate, int maxBatchSize, Duration batchWindow,
+                               ScheduledExecutorService scheduler, boolean ownScheduler) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+    }
+
+    public CompletableFuture<Optional<User>> load(int id) {
+        CompletableFuture<Optional<User>> future;
+        Map<Integer, CompletableFuture<Optional<User>>> fullBatch = null;
+        synchronized (lock) {
+            future = pending.get(id);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            pending.put(id, future);
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takePending();
+            } else if (scheduledDispatch == null) {
+                scheduledDispatch = scheduler.schedule(() -> dispatch(), batchWindowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            Map<Integer, CompletableFuture<Optional<User>>> batch = fullBatch;
+            scheduler.execute(() -> dispatch(batch));
+        }
+        return future;
+    }
+
+    /**
+     * Loads collected ids right away, without waiting for the batch window.
+     */
+    public void dispatch() {
+        Map<Integer, CompletableFuture<Optional<User>>> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    @Override
+    public Optional<User> getUserById(int id) {
+        return load(id).join();
+    }
+
+    @Override
+    public Map<Integer, User> getUsersByIds(int[] ids) {
+        Map<Integer, CompletableFuture<Optional<User>>> futures = new HashMap<>();
+        for (int id : ids) {
+            futures.put(id, load(id));
+        }
+        Map<Integer, User> result = new HashMap<>();
+        futures.forEach((id, future) -> future.join().ifPresent(user -> result.put(id, user)));
+        return result;
+    }
+
+    /**
+     * Loads all collected ids and stops the scheduler if it was created by this loader.
+     */
+    @Override
+    public void close() {
+        dispatch();
+        if (ownScheduler) {
+            scheduler.shutdown();
+        }
+    }
+
+    private Map<Integer, CompletableFuture<Optional<User>>> takePending() {
+        Map<Integer, CompletableFuture<Optional<User>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledDispatch != null) {
+            scheduledDispatch.cancel(false);
+            scheduledDispatch = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<Integer, CompletableFuture<Optional<User>>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int[] ids = batch.keySet().stream().mapToInt(Integer::intValue).toArray();
+        try {
+            Map<Integer, User> users = delegate.getUsersByIds(ids);
+            batch.forEach((id, future) -> future.complete(Optional.ofNullable(users.get(id))));
+        } catch (RuntimeException | Error e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.issues.repository;
+
+import com.issues.User;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-in for a remote store: every call of {@link #getUsersByIds(int[])} is one "round trip" which takes
+ * {@code latency}, no matter how many ids are requested.
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private final Map<Integer, User> users = new ConcurrentHashMap<>();
+
+    private final Duration latency;
+
+    private final LongAdder roundTrips = new LongAdder();
+
+    public InMemoryUserRepository(Duration latency) {
+        this.latency = latency;
+    }
+
+    public void save(User user) {
+        users.put(user.getId(), user);
+    }
+
+    @Override
+    public Map<Integer, User> getUsersByIds(int[] ids) {
+        roundTrips.increment();
+        sleep();
+        Map<Integer, User> result = new HashMap<>();
+        for (int id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                result.put(id, user);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return amount of {@link #getUsersByIds(int[])} calls so far.
+     */
+    public long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    private void sleep() {
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(latency.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading users.", e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.issues.repository;
+
+import com.issues.User;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Access to the users store. Implementations should be optimized for batch loading via {@link #getUsersByIds(int[])}:
+ * for a remote store loading users one by one means one round trip per user.
+ */
+public interface UserRepository {
+
+    /**
+     * @param ids
+     * @return found users by id, ids which are not found are absent in the result.
+     */
+    Map<Integer, User> getUsersByIds(int[] ids);
+
+    default Optional<User> getUserById(int id) {
+        return Optional.ofNullable(getUsersByIds(new int[]{id}).get(id));
+    }
+}
@@ -0,0 +1,578 @@
+package com.issues.text;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Replaces several literal strings in one pass. On Java 8 {@link String#replace(CharSequence, CharSequence)} compiles
+ * a regex {@link java.util.regex.Pattern} on every call and every rule makes a new string, here rules are compiled
+ * once into a trie and text is transformed from {@code char[]}/{@link CharBuffer} without intermediate strings.
+ *
+ * Text is scanned left to right, at every position the longest matching pattern is replaced and scan continues after
+ * it, so replacements never overlap and replaced text is not scanned again. For a single rule result is the same as
+ * {@link String#replace(CharSequence, CharSequence)}.
+ *
+ * First chars of patterns are looked up in a table indexed by char, so most positions cost one array read. When all
+ * patterns and replacements are single chars, text is mapped char by char.
+ *
+ * Large files are transformed by {@link #transformFile(Path, Path, Charset, Executor, int)}: memory-mapped chunks are
+ * transformed in parallel and written in order.
+ *
+ * Instances are immutable and thread safe.
+ */
+public final class LiteralReplacer implements Function<String, String> {
+
+    private static final int NONE = -1;
+
+    private static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+
+    private static final int MIN_CHUNK_BYTES = 4096;
+
+    /**
+     * UTF-8 encodes a BMP char in at most 3 bytes, supplementary chars take 4 bytes for 2 chars.
+     */
+    private static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+
+    /**
+     * Trie node of the first char of a pattern, indexed by char, {@link #NONE} if no pattern starts with it.
+     */
+    private final int[] rootNodes;
+
+    /**
+     * Children of node {@code n} are {@code childChars/childNodes[childOffsets[n] .. childOffsets[n + 1])}, sorted by
+     * char.
+     */
+    private final int[] childOffsets;
+
+    private final char[] childChars;
+
+    private final int[] childNodes;
+
+    /**
+     * Index of replacement if a pattern ends in this node, {@link #NONE} otherwise.
+     */
+    private final int[] terminals;
+
+    private final char[][] replacements;
+
+    /**
+     * Direct char to char mapping, only when all rules are single char ones, {@code null} otherwise.
+     */
+    private final char[] charMap;
+
+    private final int maxPatternLength;
+
+    private final int maxReplacementLength;
+
+    private LiteralReplacer(Map<String, String> rules) {
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("At least one replacement is required.");
+        }
+        //mutable trie is built first, then flattened into arrays
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> nodeTerminals = new ArrayList<>();
+        children.add(new TreeMap<>());
+        nodeTerminals.add(NONE);
+        this.replacements = new char[rules.size()][];
+        int maxPattern = 0;
+        int maxReplacement = 0;
+        int maxFirstChar = 0;
+        boolean singleChars = true;
+        int rule = 0;
+        for (Map.Entry<String, String> entry : rules.entrySet()) {
+            String pattern = entry.getKey();
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer child = children.get(node).get(pattern.charAt(i));
+                if (child == null) {
+                    child = children.size();
+                    children.add(new TreeMap<>());
+                    nodeTerminals.add(NONE);
+                    children.get(node).put(pattern.charAt(i), child);
+                }
+                node = child;
+            }
+            nodeTerminals.set(node, rule);
+            replacements[rule++] = entry.getValue().toCharArray();
+            maxPattern = Math.max(maxPattern, pattern.length());
+            maxReplacement = Math.max(maxReplacement, entry.getValue().length());
+            maxFirstChar = Math.max(maxFirstChar, pattern.charAt(0));
+            singleChars &= pattern.length() == 1 && entry.getValue().length() == 1;
+        }
+        this.maxPatternLength = maxPattern;
+        this.maxReplacementLength = maxReplacement;
+
+        int nodeCount = children.size();
+        this.terminals = new int[nodeCount];
+        this.childOffsets = new int[nodeCount + 1];
+        int edgeCount = nodeCount - 1;
+        this.childChars = new char[edgeCount];
+        this.childNodes = new int[edgeCount];
+        int edge = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            terminals[node] = nodeTerminals.get(node);
+            childOffsets[node] = edge;
+            for (Map.Entry<Character, Integer> child : children.get(node).entrySet()) {
+                childChars[edge] = child.getKey();
+                childNodes[edge++] = child.getValue();
+            }
+        }
+        childOffsets[nodeCount] = edge;
+
+        this.rootNodes = new int[maxFirstChar + 1];
+        Arrays.fill(rootNodes, NONE);
+        for (Map.Entry<Character, Integer> child : children.get(0).entrySet()) {
+            rootNodes[child.getKey()] = child.getValue();
+        }
+
+        if (singleChars) {
+            charMap = new char[maxFirstChar + 1];
+            for (char c = 0; c <= maxFirstChar; c++) {
+                charMap[c] = rootNodes[c] == NONE ? c : replacements[terminals[rootNodes[c]]][0];
+            }
+        } else {
+            charMap = null;
+        }
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @param s
+     * @return transformed string, {@code s} itself if nothing was replaced.
+     */
+    @Override
+    public String apply(String s) {
+        int first = firstCandidate(s);
+        if (first < 0) {
+            return s;
+        }
+        char[] chars = s.toCharArray();
+        Output out = new Output(new char[Math.max(16, chars.length + chars.length / 8)], true);
+        out.append(chars, 0, first);
+        scan(chars, first, chars.length, chars.length, out, null);
+        return new String(out.chars, 0, out.length);
+    }
+
+    /**
+     * @param inputLength
+     * @return the largest possible length of transformed text of {@code inputLength} chars.
+     */
+    public long maxOutputLength(int inputLength) {
+        return (long) inputLength * Math.max(1, maxReplacementLength);
+    }
+
+    /**
+     * @param src
+     * @param offset
+     * @param length
+     * @param dst should have at least {@link #maxOutputLength(int)} chars starting from {@code dstOffset}.
+     * @param dstOffset
+     * @return amount of chars written to {@code dst}.
+     */
+    public int transform(char[] src, int offset, int length, char[] dst, int dstOffset) {
+        if (dst.length - dstOffset < maxOutputLength(length)) {
+            throw new BufferOverflowException();
+        }
+        Output out = new Output(dst, false);
+        out.length = dstOffset;
+        scan(src, offset, offset + length, offset + length, out, null);
+        return out.length - dstOffset;
+    }
+
+    /**
+     * Transforms all remaining chars of {@code in}, positions of both buffers are advanced.
+     * @param in
+     * @param out should have at least {@link #maxOutputLength(int)} chars remaining.
+     */
+    public void transform(CharBuffer in, CharBuffer out) {
+        int length = in.remaining();
+        if (out.remaining() < maxOutputLength(length)) {
+            throw new BufferOverflowException();
+        }
+        char[] src;
+        int srcOffset;
+        if (in.hasArray()) {
+            src = in.array();
+            srcOffset = in.arrayOffset() + in.position();
+        } else {
+            src = new char[length];
+            in.duplicate().get(src);
+            srcOffset = 0;
+        }
+        if (out.hasArray()) {
+            int written = transform(src, srcOffset, length, out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + written);
+        } else {
+            char[] dst = new char[(int) maxOutputLength(length)];
+            out.put(dst, 0, transform(src, srcOffset, length, dst, 0));
+        }
+        in.position(in.limit());
+    }
+
+    /**
+     * Transforms UTF-8 file in chunks of 8MB, using {@link ForkJoinPool#commonPool()}.
+     * @param source
+     * @param target
+     * @return amount of bytes written
+     * @throws IOException
+     */
+    public long transformFile(Path source, Path target) throws IOException {
+        return transformFile(source, target, StandardCharsets.UTF_8, ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Maps {@code source} in chunks of about {@code chunkBytes}, which are decoded and transformed in parallel, and
+     * writes results to {@code target} in order. At most two chunks per available processor are in memory at a time.
+     *
+     * Chunk boundaries are moved to char boundaries, and every chunk looks ahead into the next one, so patterns
+     * crossing boundaries are replaced. When a replacement in one chunk covers the beginning of the next chunk, the
+     * next chunk result is used from the point where both scans are in sync, or, rarely, that chunk is transformed
+     * again from the end of the replacement.
+     * @param source
+     * @param target created or truncated.
+     * @param charset UTF-8 or a single byte charset.
+     * @param executor
+     * @param chunkBytes
+     * @return amount of bytes written
+     * @throws IOException
+     */
+    public long transformFile(Path source, Path target, Charset charset, Executor executor, int chunkBytes)
+            throws IOException {
+        if (chunkBytes < MIN_CHUNK_BYTES) {
+            throw new IllegalArgumentException("chunkBytes should be at least " + MIN_CHUNK_BYTES + ": " + chunkBytes);
+        }
+        boolean utf8 = StandardCharsets.UTF_8.equals(charset);
+        if (!utf8 && charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            throw new IllegalArgumentException("Only UTF-8 and single byte charsets are supported: " + charset);
+        }
+        int lookaheadBytes = (maxPatternLength - 1) * (utf8 ? MAX_UTF8_BYTES_PER_CHAR : 1);
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long[] boundaries = chunkBoundaries(in, chunkBytes, utf8);
+            int window = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+            Deque<CompletableFuture<Chunk>> pending = new ArrayDeque<>();
+            CharsetEncoder encoder = newEncoder(charset);
+            long written = 0;
+            int carry = 0;
+            int next = 0;
+            while (next < boundaries.length - 1 || !pending.isEmpty()) {
+                while (next < boundaries.length - 1 && pending.size() < window) {
+                    long start = boundaries[next];
+                    long end = boundaries[++next];
+                    pending.add(CompletableFuture.supplyAsync(
+                            () -> readChunk(in, start, end, lookaheadBytes, charset, utf8), executor));
+                }
+                Chunk chunk = join(pending.poll());
+                if (carry >= chunk.length) {
+                    //previous replacement covers the whole chunk
+                    carry -= chunk.length;
+                    continue;
+                }
+                int outputFrom = carry == 0 ? 0 : chunk.sync[carry];
+                if (outputFrom < 0) {
+                    chunk.transformFrom(carry);
+                    outputFrom = 0;
+                }
+                written += write(out, encoder, chunk.output, outputFrom);
+                carry = chunk.overhang;
+            }
+            return written;
+        }
+    }
+
+    private int firstCandidate(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < rootNodes.length && rootNodes[c] != NONE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Transforms {@code src[from, to)}. Pattern starting before {@code to} may end before {@code limit}.
+     * @param sync if not {@code null}, output offset is recorded for every position {@code from + k} where a
+     *             replacement or unchanged char starts, {@code k < sync.length}.
+     * @return position where scan stopped, greater than {@code to} if the last replacement crossed it.
+     */
+    private int scan(char[] src, int from, int to, int limit, Output out, int[] sync) {
+        if (charMap != null) {
+            out.ensureCapacity(to - from);
+            for (int i = from; i < to; i++) {
+                if (sync != null && i - from < sync.length) {
+                    sync[i - from] = out.length;
+                }
+                char c = src[i];
+                out.chars[out.length++] = c < charMap.length ? charMap[c] : c;
+            }
+            return to;
+        }
+        int copyFrom = from;
+        int i = from;
+        while (i < to) {
+            if (sync != null && i - from < sync.length) {
+                sync[i - from] = out.length + i - copyFrom;
+            }
+            char c = src[i];
+            int node = c < rootNodes.length ? rootNodes[c] : NONE;
+            if (node == NONE) {
+                i++;
+                continue;
+            }
+            int matchRule = terminals[node];
+            int matchLength = 1;
+            for (int j = i + 1; j < limit; j++) {
+                node = child(node, src[j]);
+                if (node == NONE) {
+                    break;
+                }
+                if (terminals[node] != NONE) {
+                    matchRule = terminals[node];
+                    matchLength = j - i + 1;
+                }
+            }
+            if (matchRule == NONE) {
+                i++;
+                continue;
+            }
+            out.append(src, copyFrom, i - copyFrom);
+            char[] replacement = replacements[matchRule];
+            out.append(replacement, 0, replacement.length);
+            i += matchLength;
+            copyFrom = i;
+        }
+        if (copyFrom < to) {
+            out.append(src, copyFrom, to - copyFrom);
+        }
+        return i;
+    }
+
+    private int child(int node, char c) {
+        int low = childOffsets[node];
+        int high = childOffsets[node + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleChar = childChars[middle];
+            if (middleChar < c) {
+                low = middle + 1;
+            } else if (middleChar > c) {
+                high = middle - 1;
+            } else {
+                return childNodes[middle];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Splits file into chunks of about {@code chunkBytes}, for UTF-8 boundaries are moved forward to char starts.
+     */
+    private static long[] chunkBoundaries(FileChannel in, int chunkBytes, boolean utf8) throws IOException {
+        long size = in.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(MAX_UTF8_BYTES_PER_CHAR + 1);
+        long position = chunkBytes;
+        while (position < size) {
+            if (utf8) {
+                probe.clear();
+                in.read(probe, position);
+                probe.flip();
+                //continuation bytes are 10xxxxxx
+                while (probe.hasRemaining() && (probe.get() & 0xC0) == 0x80) {
+                    position++;
+                }
+            }
+            if (position < size) {
+                boundaries.add(position);
+            }
+            position += chunkBytes;
+        }
+        boundaries.add(size);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    private Chunk readChunk(FileChannel in, long start, long end, int lookaheadBytes, Charset charset,
+                            boolean utf8) {
+        try {
+            long mappedEnd = Math.min(in.size(), end + lookaheadBytes);
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, start, mappedEnd - start);
+            int mainBytes = (int) (end - start);
+            //single byte and UTF-8 charsets never decode to more chars than bytes
+            CharBuffer chars = CharBuffer.allocate(mainBytes + (mappedEnd > end ? maxPatternLength : 0));
+            CharsetDecoder decoder = newDecoder(charset);
+            ByteBuffer main = mapped.duplicate();
+            main.limit(mainBytes);
+            decoder.decode(main, chars, true);
+            decoder.flush(chars);
+            int length = chars.position();
+            if (mappedEnd > end) {
+                ByteBuffer lookahead = mapped.duplicate();
+                lookahead.position(mainBytes);
+                if (utf8) {
+                    //lookahead is cut at char start, so its last char is not decoded as malformed
+                    int limit = lookahead.limit();
+                    while (limit > mainBytes && mappedEnd - start > limit && (mapped.get(limit) & 0xC0) == 0x80) {
+                        limit--;
+                    }
+                    lookahead.limit(limit);
+                }
+                CharBuffer lookaheadChars = CharBuffer.allocate(lookahead.remaining());
+                newDecoder(charset).decode(lookahead, lookaheadChars, true);
+                lookaheadChars.flip();
+                lookaheadChars.limit(Math.min(lookaheadChars.limit(), maxPatternLength - 1));
+                chars.put(lookaheadChars);
+            }
+            return new Chunk(chars.array(), length, chars.position());
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static int write(FileChannel out, CharsetEncoder encoder, Output output, int from) throws IOException {
+        ByteBuffer bytes = encoder.reset().encode(CharBuffer.wrap(output.chars, from, output.length - from));
+        int written = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        return written;
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static CharsetEncoder newEncoder(Charset charset) {
+        return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static Chunk join(CompletableFuture<Chunk> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Decoded and transformed chunk of a file. Chars of the chunk are {@code [0, length)}, followed by lookahead chars
+     * of the next chunks up to {@code limit}.
+     */
+    private final class Chunk {
+        private final char[] chars;
+        private final int length;
+        private final int limit;
+        private final int[] sync = new int[maxPatternLength];
+        private Output output;
+        private int overhang;
+
+        private Chunk(char[] chars, int length, int limit) {
+            this.chars = chars;
+            this.length = length;
+            this.limit = limit;
+            transformFrom(0);
+        }
+
+        private void transformFrom(int from) {
+            Arrays.fill(sync, NONE);
+            output = new Output(new char[Math.max(16, length - from + (length - from) / 8)], true);
+            overhang = scan(chars, from, length, limit, output, sync) - length;
+        }
+    }
+
+    private static final class Output {
+        private char[] chars;
+        private int length;
+        private final boolean growable;
+
+        private Output(char[] chars, boolean growable) {
+            this.chars = chars;
+            this.growable = growable;
+        }
+
+        private void append(char[] src, int offset, int count) {
+            ensureCapacity(count);
+            System.arraycopy(src, offset, chars, length, count);
+            length += count;
+        }
+
+        private void ensureCapacity(int count) {
+            if (chars.length - length < count) {
+                if (!growable) {
+                    throw new BufferOverflowException();
+                }
+                chars = Arrays.copyOf(chars, Math.max(length + count, chars.length + (chars.length >> 1)));
+            }
+        }
+    }
+
+    public static final class Builder {
+        private final Map<String, String> rules = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param pattern non-empty literal, not a regex.
+         * @param replacement
+         * @return
+         */
+        public Builder withReplacement(String pattern, String replacement) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Pattern should not be empty.");
+            }
+            if (replacement == null) {
+                throw new IllegalArgumentException("Replacement should not be null, pattern: " + pattern);
+            }
+            if (rules.putIfAbsent(pattern, replacement) != null) {
+                throw new IllegalArgumentException("Duplicate pattern: " + pattern);
+            }
+            return this;
+        }
+
+        public LiteralReplacer build() {
+            return new LiteralReplacer(new LinkedHashMap<>(rules));
+        }
+    }
+}
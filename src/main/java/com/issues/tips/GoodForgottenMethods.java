@@ -1,9 +1,11 @@
 package com.issues.tips;
 
 import com.issues.User;
+import com.issues.collections.UserSorter;
 
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 /**
  * Quite common there is a situation when you need to reverse sorting or put null values after non-null values.
@@ -36,4 +38,25 @@ public class GoodForgottenMethods {
                 Comparator.nullsLast(Comparator.naturalOrder()));
 
     }
+
+    /**
+     * Comparators above box {@code int} id on every comparison. For large lists, please, use {@link UserSorter}: keys
+     * are extracted once and sorted as primitives, with the same result as {@code reversed()} and {@code nullsLast()}.
+     * @param users
+     * @return
+     */
+    public List<User> sortLarge(List<User> users) {
+        return UserSorter.byId().reversed().nullsLast().sort(users);
+    }
+
+    /**
+     * Please, do not sort the whole list to take a few first users, collect them with a bounded heap instead.
+     * @param users
+     * @param count
+     * @return
+     */
+    public List<User> top(List<User> users, int count) {
+        return users.stream()
+                .collect(UserSorter.byId().reversed().topK(count));
+    }
 }